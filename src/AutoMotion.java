@@ -22,6 +22,7 @@ public class AutoMotion {
 
     /**
      * performs camera move and scale change if iterations are greater that 0.
+     * While the animation lasts it asks the plane for the next frame.
      */
     void proceed() {
         if(cameraIteration > 0) {
@@ -32,6 +33,16 @@ public class AutoMotion {
             plane.scale += scaleDifference;
             scaleIteration -= 1;
         }
+        if(isRunning()) {
+            plane.requestRedraw();
+        }
+    }
+
+    /**
+     * @return true if camera is still moving or scale is still changing
+     */
+    boolean isRunning() {
+        return cameraIteration > 0 || scaleIteration > 0;
     }
 
     /**
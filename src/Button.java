@@ -94,8 +94,8 @@ public abstract class Button implements Container {
      * RGB values stays the same, but backgroundCol and textCol are updated by visibility
      */
     protected void updateVisibility() {
-        backgroundCol = new Color(backgroundCol.getRed(), backgroundCol.getGreen(), backgroundCol.getBlue(), visibility);
-        textCol = new Color(textCol.getRed(), textCol.getGreen(), textCol.getBlue(), visibility);
+        backgroundCol = DrawUtils.withAlpha(backgroundCol, visibility);
+        textCol = DrawUtils.withAlpha(textCol, visibility);
     }
 
     String getLabel() { return label; }
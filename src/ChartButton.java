@@ -0,0 +1,67 @@
+import java.awt.*;
+
+/**
+ * LabelButton with a line chart of values from 0 to 1 (e.g. accuracy of KNN for k = 1, 2, ...).
+ * The title is drawn above the chart, the best value is marked with a dot.
+ * Values can be updated, like in ValueLabelButton. Doesn't support hovering.
+ */
+class ChartButton extends LabelButton {
+    private final String title;
+    private double[] values = new double[0];
+    private int[] xs = new int[0], ys = new int[0];
+
+    ChartButton(int x, int y, int width, int height, String title, int fontSize) {
+        super(x, y, width, height, title, fontSize);
+        this.title = title;
+    }
+
+    /**
+     * @param newValues - values from 0 to 1, the first one is on the left (they are copied)
+     */
+    void updateValues(double[] newValues) {
+        values = newValues.clone();
+        if(xs.length != values.length) {
+            xs = new int[values.length];
+            ys = new int[values.length];
+        }
+    }
+
+    /**
+     * Draws the title in the upper part and the chart below. The vertical axis starts
+     * at the lowest value (rounded down to tenths), so small differences are visible.
+     */
+    @Override
+    void draw() {
+        DrawUtils.g2.setColor(backgroundCol);
+        DrawUtils.g2.fillRect(x, y, width, height);
+
+        DrawUtils.g2.setColor(textCol);
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.drawCenteredString(title, x+width/2, y+height/6);
+        if(values.length == 0) return;
+
+        double lowest = 1;
+        int best = 0;
+        for(int i = 0; i < values.length; i++) {
+            lowest = Math.min(lowest, values[i]);
+            if(values[i] > values[best]) best = i;
+        }
+        lowest = Math.min(Math.floor(lowest*10) / 10, 0.9);
+
+        int left = x + width/10, right = x + width*9/10;
+        int top = y + height/3, bottom = y + height*9/10;
+        for(int i = 0; i < values.length; i++) {
+            xs[i] = values.length == 1 ? (left + right)/2 : left + (right - left)*i/(values.length - 1);
+            ys[i] = (int)(bottom - (bottom - top)*(values[i] - lowest)/(1 - lowest));
+        }
+
+        DrawUtils.g2.setColor(DrawUtils.withAlpha(DrawUtils.black, visibility));
+        DrawUtils.g2.drawLine(left, bottom, right, bottom);
+        DrawUtils.g2.setColor(textCol);
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
+        DrawUtils.g2.drawPolyline(xs, ys, values.length);
+        DrawUtils.g2.fillOval(xs[best] - 4, ys[best] - 4, 8, 8);
+    }
+
+    public String getTitle() { return title; }
+}
@@ -39,11 +39,11 @@ public class CheckBoxButton extends ClickableButton {
         DrawUtils.g2.fillRect(x, y, width, height);
 
         DrawUtils.g2.setColor(textCol);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         DrawUtils.drawStringWithLeftAlignment(label, x+width/4, y+height/2);
 
         int side = min(3*height/4, width/8);
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.drawRect(x+width/15, y+(height-side)/2, side, side);
 
         if(value) {
@@ -29,7 +29,7 @@ class ClickableButton extends Button {
         super.draw();
 
         DrawUtils.g2.setColor(textCol);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         DrawUtils.drawCenteredString(label, x+width/2, y+height/2);
     }
 
@@ -1,6 +1,7 @@
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
+import java.util.List;
 
 import static java.lang.StrictMath.ceil;
 import static java.lang.StrictMath.floor;
@@ -15,6 +16,13 @@ public class CoordinateSystem implements GraphicsInterface {
     protected Point2D camera;
     // List of samples (points or vectors) in R^2
     protected ArrayList<Sample> samples = new ArrayList<>();
+    // number of samples added so far, gives samples their order (see {@code select})
+    private long addedSamples;
+    // values of samples in primitive arrays used by algorithms, refreshed by syncStore
+    protected final SampleStore store = new SampleStore();
+    // running means, variances and covariance of samples, updated by every add, remove and move of a sample.
+    // All simulations read statistics of samples (also regression and correlation) from them
+    protected final Moments moments = new Moments();
     // length of the unit in pixels
     protected double scale;
     // visibility of lines that represent the integer value of one of the axes of the coordinate system
@@ -25,11 +33,17 @@ public class CoordinateSystem implements GraphicsInterface {
     protected Panel panel;
     // menu on the left hand side of the screen with some options in simulation
     protected SideMenu menu;
+    // sample which follows the mouse or null
+    protected Sample movingSample;
+    // used instead of drawing samples one by one when there are too many of them on the screen
+    protected final DensityGrid density = new DensityGrid();
     // window with text about current simulation
     protected MessageWindow messageWindow, exitWindow;
     // name of menu that will be active after quit this simulation
     protected String menuName;
     protected final int STANDARD_BUTTON_HEIGHT;
+    // cached images of the grid and axes, of the simulation objects and of the menu with windows
+    private final Layer backgroundLayer = new Layer(), dataLayer = new Layer(), interfaceLayer = new Layer();
 
     CoordinateSystem(int width, int height, Panel mainPanel) {
         this.width = width;
@@ -54,6 +68,7 @@ public class CoordinateSystem implements GraphicsInterface {
         menu.addCheckBoxButtons(new String[]{StringsResources.hide()}, new Boolean[] {false}, STANDARD_BUTTON_HEIGHT);
         menu.addButtons(new String[]{StringsResources.menu(), StringsResources.help()}, STANDARD_BUTTON_HEIGHT);
         menu.addCheckBoxButtons(new String[]{StringsResources.grid()}, new Boolean[] {true},STANDARD_BUTTON_HEIGHT);
+        menu.addCheckBoxButtons(new String[]{StringsResources.frameTimings()}, new Boolean[] {FrameProfiler.isHudVisible()}, STANDARD_BUTTON_HEIGHT);
 
         // adds more buttons depending which simulation is running
         initSideMenu();
@@ -78,13 +93,73 @@ public class CoordinateSystem implements GraphicsInterface {
     void initSideMenu() { }
 
     /**
-     * Draws all simulation's objects, side menu and message window
+     * Draws all simulation's objects, side menu and message window.
+     * Every part is drawn on its own layer which is drawn again only if something on it has changed.
+     * Background depends only on the camera, scale and {@code backgroundState}, simulation objects depend also
+     * on samples so they are drawn again after {@code invalidateData}. Menu and windows are drawn again after
+     * {@code invalidateInterface}. Simulations should override {@code drawBackground} and {@code drawData}
+     * instead of this method. Time of every layer is measured by FrameProfiler.
      */
     @Override
     public void draw() {
+        long cameraState = Layer.combine(Layer.combine(Layer.combine(0, camera.x), camera.y), scale);
+
+        long start = FrameProfiler.start();
+        backgroundLayer.draw(width, height, Layer.combine(cameraState, backgroundState()), this::drawBackground);
+        FrameProfiler.record(FrameProfiler.Phase.BACKGROUND, start);
+
+        start = FrameProfiler.start();
+        dataLayer.draw(width, height, cameraState, this::drawData);
+        FrameProfiler.record(FrameProfiler.Phase.DATA, start);
+
+        start = FrameProfiler.start();
+        interfaceLayer.draw(width, height, 0, this::drawInterface);
+        FrameProfiler.record(FrameProfiler.Phase.INTERFACE, start);
+
+        // statistics change every frame so they are not cached
+        if(FrameProfiler.isHudVisible()) {
+            FrameProfiler.drawHud(width, height);
+        }
+    }
+
+    /**
+     * Draws everything that doesn't depend on samples (grid and axes).
+     * If it depends on something else than the camera and the scale then {@code backgroundState} has to be overridden as well.
+     */
+    void drawBackground() {
         drawLines();
+    }
+
+    /**
+     * Value that describes everything on what the background depends (except the camera and the scale).
+     * When it changes the background is drawn again.
+     * @return state of the background (see {@code Layer.combine})
+     */
+    long backgroundState() {
+        return Layer.combine(linesVisibility ? 1 : 0, DrawUtils.fontColor.getRGB());
+    }
+
+    /**
+     * Draws samples and all objects of the simulation which depend on them.
+     */
+    void drawData() {
         drawSamples();
-        drawInterface();
+    }
+
+    /**
+     * Forces drawing samples, simulation objects and the menu (it has labels of samples) in the next frame.
+     * Has to be called after every change of samples or settings of the simulation.
+     */
+    void invalidateData() {
+        dataLayer.invalidate();
+        interfaceLayer.invalidate();
+    }
+
+    /**
+     * Forces drawing the menu and windows in the next frame.
+     */
+    void invalidateInterface() {
+        interfaceLayer.invalidate();
     }
 
     void drawInterface() {
@@ -98,7 +173,7 @@ public class CoordinateSystem implements GraphicsInterface {
      */
     void drawLines() {
         if(linesVisibility) {
-            DrawUtils.g2.setStroke(new BasicStroke(1));
+            DrawUtils.g2.setStroke(DrawUtils.stroke(1));
             DrawUtils.g2.setColor(DrawUtils.darkGray);
             for (int i = (int) ceil(camera.x); i < ceil(camera.x) + floor(width / scale) + 1; i++) {
                 DrawUtils.line((i - camera.x) * scale, 0, (i - camera.x) * scale, height);
@@ -108,7 +183,7 @@ public class CoordinateSystem implements GraphicsInterface {
             }
         }
 
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.setColor(DrawUtils.fontColor);
         DrawUtils.line(-camera.x*scale, 0, -camera.x*scale, height);
         DrawUtils.line(0, camera.y*scale, width, camera.y*scale);
@@ -117,36 +192,79 @@ public class CoordinateSystem implements GraphicsInterface {
     /**
      * Draws all standard samples in reverse order
      * because when a sample is on top of a stack of several samples
-     * it is more logical that it has to be moved first
+     * it is more logical that it has to be moved first.
+     * When there are too many samples on the screen (see {@code DensityGrid.THRESHOLD}) their density is drawn instead
+     * and only the moving sample is drawn normally.
      */
     void drawSamples() {
-        for(int i = samples.size()-1; i >= 0; i--) {
-            samples.get(i).draw(camera, scale);
+        if(density.isNeeded(this)) {
+            density.draw(this);
+            if(movingSample != null) movingSample.draw(camera, scale);
+            return;
         }
+        drawSampleList(samples);
     }
 
     /**
-     * Checks if mouse is over some sample and if so returns its index.
-     * If mouse is over many samples then returns first one in the list
-     * If mouse is not over any sample, returns -1
+     * Draws given samples in reverse order. If there are many of them they are drawn
+     * at once by SampleSprites, otherwise one by one.
+     * @param list - samples to be drawn (e.g. samples of the simulation or their projections)
+     */
+    void drawSampleList(List<Sample> list) {
+        if(list.size() >= SampleSprites.THRESHOLD) {
+            SampleSprites.draw(list, this);
+            return;
+        }
+
+        // selection ring is the biggest part of the sample
+        double margin = Sample.radius()*1.7;
+        for(int i = list.size()-1; i >= 0; i--) {
+            Sample sample = list.get(i);
+            if(isVisible(sample.x, sample.y, margin)) {
+                sample.draw(camera, scale);
+            }
+        }
+    }
+
+    /**
+     * Checks if the point (or something around it) can be seen on the screen.
+     * @param x - x coordinate in cartesian plane simulation
+     * @param y - y coordinate in cartesian plane simulation
+     * @param margin - size of the object around the point (in cartesian plane units)
+     * @return true if the square with the center in (x, y) and side 2*margin intersects the screen
+     */
+    boolean isVisible(double x, double y, double margin) {
+        return x + margin >= camera.x && x - margin <= camera.x + width/scale
+                && y - margin <= camera.y && y + margin >= camera.y - height/scale;
+    }
+
+    /**
+     * Checks if mouse is over some sample and if so returns it.
+     * If mouse is over many samples then returns the one drawn on top (the first one in the list of samples).
+     * If mouse is not over any sample, returns null.
+     * Only samples under the mouse are checked (thanks to the spatial index), the list of samples is not scanned.
      *
      * @param mouseX - mouse x position (in pixels)
      * @param mouseY - mouse y position (in pixels)
-     * @return index of first sample under the mouse or -1 if there are no such a sample
+     * @return the sample under the mouse or null if there are no such a sample
      */
-    int select(double mouseX, double mouseY) {
+    Sample select(double mouseX, double mouseY) {
         // converts to simulation coordinates to compare it to samples positions
         double x = simulationX(mouseX);
         double y = simulationY(mouseY);
 
-        // iterates over all points and checks if some samples are under the mouse
-        for(int i = 0; i < samples.size(); i++) {
-            if(samples.get(i).hasInside(x,y)) {
-                return i;
+        // spatial index of the menu gives only samples under the mouse, also projected ones
+        // which are not samples of the simulation.
+        // Samples are drawn from the last one, so the first one in the list (added earliest) is on top.
+        Sample top = null;
+        for(Sample sample: menu.getSampleIndex().samplesAt(x, y)) {
+            if(sample.getSimulation() != this) continue;
+
+            if(top == null || sample.getOrder() < top.getOrder()) {
+                top = sample;
             }
         }
-        // if no sample is under the mouse returns -1
-        return -1;
+        return top;
     }
 
     /**
@@ -212,12 +330,13 @@ public class CoordinateSystem implements GraphicsInterface {
      */
     boolean colorSelectedSample(Color col, int value) {
         Point mouse = new Point(panel.prevMouseX, panel.prevMouseY);
-        int index = select(mouse.x, mouse.y);
+        Sample sample = select(mouse.x, mouse.y);
 
-        // if index == -1 then no sample is under the mouse
-        if(index != -1) {
-            samples.get(index).setColor(col);
-            samples.get(index).setCategory(value);
+        // if sample == null then no sample is under the mouse
+        if(sample != null) {
+            sample.setColor(col);
+            sample.setCategory(value);
+            density.update(sample);
             return true;
         }
         return false;
@@ -269,18 +388,18 @@ public class CoordinateSystem implements GraphicsInterface {
      * @param y - y value of drawn vector
      */
     void drawVector(double x, double y) {
-        DrawUtils.line(screenX(0), screenY(0), screenX(x), screenY(y));
+        drawSection(0, 0, x, y);
     }
 
     /**
-     * draws a line between two points in cartesian plane.
+     * draws a line between two points in cartesian plane. Only the part of it which is on the screen is drawn.
      * @param x1 - x value of the first point
      * @param y1 - y value of the first point
      * @param x2 - x value of the second point
      * @param y2 - y value of the second point
      */
     void drawSection(double x1, double y1, double x2, double y2) {
-        DrawUtils.line(screenX(x1), screenY(y1), screenX(x2), screenY(y2));
+        DrawUtils.clippedLine(screenX(x1), screenY(y1), screenX(x2), screenY(y2), width, height);
     }
 
     /**
@@ -292,17 +411,68 @@ public class CoordinateSystem implements GraphicsInterface {
     void addNewSample(double x, double y) {
         Sample sample = new Sample(x, y);
         samples.add(sample);
+        density.add(sample);
+        moments.add(sample.getX(), sample.getY());
+        sample.setSimulation(this, addedSamples++);
         menu.addSampleLabel(sample, STANDARD_BUTTON_HEIGHT, true);
+        invalidateData();
     }
 
     /**
-     * Removes the sample with the given index. Also removes the button
-     * corresponding with this sample.
-     * @param index - index of sample that has to be deleted.
+     * Adds a sample with already known class (for example a sample generated by the offscreen renderer).
+     * Unlike {@code addNewSample} it doesn't depend on the rules of the simulation.
+     * The simulation is not updated, so after loading all samples {@code update} should be called.
+     * @param x - x coordinate of the sample (in cartesian plane simulation)
+     * @param y - y coordinate of the sample (in cartesian plane simulation)
+     * @param category - class of the sample (0 means neutral), also decides about its color
      */
-    void removeSample(int index) {
-        menu.removeSampleLabel(samples.get(index));
-        samples.remove(index);
+    void loadSample(double x, double y, int category) {
+        loadSample(x, y, category, category);
+    }
+
+    /**
+     * The same as {@code loadSample(x, y, category)} but the sample gets its own value
+     * (predicted by the KNN regression) instead of the number of its class.
+     * @param x - x coordinate of the sample (in cartesian plane simulation)
+     * @param y - y coordinate of the sample (in cartesian plane simulation)
+     * @param category - class of the sample (0 means neutral), also decides about its color
+     * @param value - value of the sample
+     */
+    void loadSample(double x, double y, int category, double value) {
+        Sample sample = new Sample(x, y, category);
+        sample.setValue(value);
+        samples.add(sample);
+        density.add(sample);
+        moments.add(sample.getX(), sample.getY());
+        sample.setSimulation(this, addedSamples++);
+        menu.addSampleLabel(sample, STANDARD_BUTTON_HEIGHT, true);
+        invalidateData();
+    }
+
+    /**
+     * Removes the sample. Also removes the button corresponding with this sample.
+     * @param sample - sample that has to be deleted.
+     */
+    void removeSample(Sample sample) {
+        menu.removeSampleLabel(sample);
+        if(sample == movingSample) movingSample = null;
+        sample.setSimulation(null, 0);
+        density.remove(sample);
+        moments.remove(sample.getX(), sample.getY());
+        samples.remove(sample);
+        invalidateData();
+    }
+
+    /**
+     * Keeps the density grid and moments up to date. Called by samples of the simulation after every move
+     * (helper samples, e.g. projections, don't belong to the simulation and don't call it).
+     * @param sample - moved sample of the simulation
+     * @param oldX - x coordinate of the sample before the move
+     * @param oldY - y coordinate of the sample before the move
+     */
+    void sampleMoved(Sample sample, double oldX, double oldY) {
+        density.update(sample);
+        moments.move(oldX, oldY, sample.getX(), sample.getY());
     }
 
     /**
@@ -315,11 +485,10 @@ public class CoordinateSystem implements GraphicsInterface {
      * @return true if some sample was moved otherwise false
      */
     boolean moveSamples(double mouseX, double mouseY) {
-        for (Sample sample : samples) {
-            if (sample.isMoving()) {
-                sample.instantMove(simulationX(mouseX), simulationY(mouseY));
-                return true;
-            }
+        if(movingSample != null && movingSample.isMoving()) {
+            movingSample.instantMove(simulationX(mouseX), simulationY(mouseY));
+            invalidateData();
+            return true;
         }
         return false;
     }
@@ -343,9 +512,9 @@ public class CoordinateSystem implements GraphicsInterface {
      */
     @Override
     public void onRightClick(double mouseX, double mouseY) {
-        int toRemove = select(mouseX, mouseY);
+        Sample toRemove = select(mouseX, mouseY);
 
-        if(toRemove != -1) {
+        if(toRemove != null) {
             removeSample(toRemove);
         } else {
             addNewSample(simulationX(mouseX), simulationY(mouseY));
@@ -363,6 +532,7 @@ public class CoordinateSystem implements GraphicsInterface {
     @Override
     public boolean onLeftClick(double mouseX, double mouseY) {
         menu.focusingInputs(mouseX, mouseY);
+        invalidateInterface();
 
         if(exitWindow.hasInside(mouseX, mouseY)) {
             exitWindow.onLeftClick(mouseX, mouseY);
@@ -374,9 +544,11 @@ public class CoordinateSystem implements GraphicsInterface {
             menu.onLeftClick(mouseX, mouseY);
             return false;
         } else {
-            int index = select(mouseX, mouseY);
-            if (index != -1) {
-                samples.get(index).setMoving(true);
+            Sample sample = select(mouseX, mouseY);
+            if (sample != null) {
+                movingSample = sample;
+                movingSample.setMoving(true);
+                invalidateData();
                 return false;
             }
             return true;
@@ -386,6 +558,7 @@ public class CoordinateSystem implements GraphicsInterface {
     /**
      * if mouse is inside the menu then performs actions related to clicked button
      * else sets all samples moving variable to false (won't follow the mouse)
+     * and computes moments again after the drag (see {@code rebuildMoments})
      * @param mouseX - current mouse x position (in pixels)
      * @param mouseY - current mouse y position (in pixels)
      */
@@ -398,12 +571,16 @@ public class CoordinateSystem implements GraphicsInterface {
         } else if(menu.hasInside(mouseX, mouseY)) {
             menuOptions(menu.onReleased(mouseX, mouseY));
         } else {
-            for(Sample sample: samples) {
-                sample.setMoving(false);
+            if(movingSample != null) {
+                movingSample.setMoving(false);
+                movingSample = null;
+                rebuildMoments();
             }
         }
         menu.disableScrollbar();
         messageWindow.disableScrollbar();
+        // options from the menu can change anything in the simulation
+        invalidateData();
     }
 
     /**
@@ -416,6 +593,8 @@ public class CoordinateSystem implements GraphicsInterface {
     void menuOptions(String label) {
         if(label.equals(StringsResources.grid())) {
             linesVisibility = !linesVisibility;
+        } else if(label.equals(StringsResources.frameTimings())) {
+            FrameProfiler.toggleHud();
         } else if(label.equals(StringsResources.help())) {
             messageWindow.toggleVisibility();
         } else if(label.equals(StringsResources.menu()) || label.equals(StringsResources.areYouSure() + " " + StringsResources.no())) {
@@ -442,14 +621,18 @@ public class CoordinateSystem implements GraphicsInterface {
     @Override
     public boolean onMouseDragged(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
         if(exitWindow.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY)) {
+            invalidateInterface();
             return false;
         }
 
         if(messageWindow.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY)) {
+            invalidateInterface();
             return false;
         }
 
         if(menu.hasInside(mouseX, mouseY) || menu.getScrollbar().getSelected()) {
+            // sliders can change the simulation
+            invalidateData();
             return menu.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY);
         }
 
@@ -463,7 +646,8 @@ public class CoordinateSystem implements GraphicsInterface {
     /**
      * Since cartesian plane simulation doesn't check if mouse was moved (unless the left button was pressed)
      * it runs {@code menu.onMouseMoved} because menu might have some buttons which support mouse hovering.
-     * and messageWindow for the same reason
+     * and messageWindow for the same reason.
+     * Layers are invalidated only if the mouse is (or was) over the menu or windows, or if it entered or left some sample.
      * @param mouseX - current mouse x position (in pixels)
      * @param mouseY - current mouse y position (in pixels)
      * @param prevMouseX - mouse x position in previous frame (in pixels)
@@ -471,10 +655,20 @@ public class CoordinateSystem implements GraphicsInterface {
      */
     @Override
     public void onMouseMoved(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
-        menu.onMouseMoved(mouseX, mouseY, prevMouseX, prevMouseY, simulationX(mouseX), simulationY(mouseY));
+        if(menu.onMouseMoved(mouseX, mouseY, prevMouseX, prevMouseY, simulationX(mouseX), simulationY(mouseY))) {
+            invalidateInterface();
+        }
+        // hovering a sample label selects the sample
+        if(menu.hasInside(mouseX, mouseY) || menu.hasInside(prevMouseX, prevMouseY)) {
+            invalidateData();
+        }
 
         exitWindow.onMouseMoved(mouseX, mouseY);
         messageWindow.onMouseMoved(mouseX, mouseY);
+        if(exitWindow.hasInside(mouseX, mouseY) || exitWindow.hasInside(prevMouseX, prevMouseY)
+                || messageWindow.hasInside(mouseX, mouseY) || messageWindow.hasInside(prevMouseX, prevMouseY)) {
+            invalidateInterface();
+        }
     }
 
     /**
@@ -485,6 +679,7 @@ public class CoordinateSystem implements GraphicsInterface {
     @Override
     public void onMouseScrolled(int rotation) {
         Point mouse = new Point(panel.prevMouseX, panel.prevMouseY);
+        invalidateInterface();
 
         if(messageWindow.hasInside(mouse.x, mouse.y)) {
             messageWindow.onMouseScrolled(rotation);
@@ -503,6 +698,7 @@ public class CoordinateSystem implements GraphicsInterface {
      */
     @Override
     public boolean onKeyPressed(KeyEvent event) {
+        invalidateData();
         if(menu.onKeyPressed(event)) {
             update();
             return true;
@@ -519,7 +715,47 @@ public class CoordinateSystem implements GraphicsInterface {
         return false;
     }
 
+    /**
+     * Updates the simulation after samples or settings have changed and measures how long it takes.
+     * Simulations should override {@code updateSimulation} instead of this method.
+     */
     public void update() {
+        long start = FrameProfiler.start();
+        updateSimulation();
+        FrameProfiler.record(FrameProfiler.Phase.UPDATE, start);
+    }
+
+    /**
+     * Copies current values of samples to the store. It costs O(n), so only simulations which need
+     * every sample (not only their moments) call it at the beginning of {@code updateSimulation}.
+     */
+    void syncStore() {
+        store.sync(samples);
+    }
 
+    /**
+     * Computes moments again from all samples by the fused compensated kernel, which removes rounding errors
+     * accumulated by moves of samples. It costs O(n), so it's done once after a drag, not after every move.
+     */
+    void rebuildMoments() {
+        store.sync(samples);
+        moments.rebuild(store);
+    }
+
+    /**
+     * Recomputes everything in the simulation what depends on samples (for example the regression line).
+     */
+    void updateSimulation() {
+
+    }
+
+    /**
+     * Asks the panel to draw the next frame. Panel draws the scene only when something has changed,
+     * so animations which change the simulation without any input event (like AutoMotion) have to call it.
+     */
+    void requestRedraw() {
+        if(panel != null) {
+            panel.requestRedraw();
+        }
     }
 }
@@ -0,0 +1,197 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Leave-one-out cross-validation of KNN classification for every k from 1 to maxK, used to recommend k.
+ * Every training sample is classified by the other training samples. Its neighbours are found only once
+ * (maxK + 1 of them, because the sample finds itself too) and voting for k continues the voting for k - 1,
+ * so all values of k cost about as much as the largest one.
+ * Samples are checked in the background on the fork-join pool, chunk after chunk. After every chunk
+ * the accuracy of samples checked so far is published and the plane is asked to redraw itself.
+ * A new request (a new engine means a new training set or metric) stops the previous one.
+ */
+class CrossValidation {
+    // accuracy is published after every chunk of samples
+    private static final int CHUNK_SIZE = 4096;
+    // ranges of a chunk with fewer samples are not divided
+    private static final int LEAF_SIZE = 256;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    // every request gets the next number, tasks of older requests stop working
+    private final AtomicInteger generation = new AtomicInteger();
+    private ForkJoinTask<?> job;
+    private NeighbourEngine requestedEngine;
+    private int requestedMaxK;
+
+    // accuracy of samples checked so far, published by the pool thread
+    // (it can be published just after cancel, so it's valid only if its generation is still the current one)
+    private volatile Result result;
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * Accuracy for every k (accuracy[k - 1]) measured on {@code checked} of {@code total} training samples
+     * by the request with the given generation.
+     */
+    static class Result {
+        final double[] accuracy;
+        final int checked, total;
+        private final int generation;
+
+        Result(int generation, long[] correct, int checked, int total) {
+            this.generation = generation;
+            accuracy = new double[correct.length];
+            for(int i = 0; i < correct.length; i++) {
+                accuracy[i] = (double)correct[i] / checked;
+            }
+            this.checked = checked;
+            this.total = total;
+        }
+
+        /**
+         * @return k with the best accuracy (the smallest one if there are many)
+         */
+        int bestK() {
+            int best = 0;
+            for(int i = 1; i < accuracy.length; i++) {
+                if(accuracy[i] > accuracy[best]) best = i;
+            }
+            return best + 1;
+        }
+    }
+
+    /**
+     * Counts samples [from, to) which are classified correctly for every k.
+     */
+    @SuppressWarnings("serial")
+    private class Chunk extends RecursiveTask<long[]> {
+        private final int generation, maxK, from, to;
+        private final NeighbourEngine engine;
+
+        Chunk(int generation, NeighbourEngine engine, int maxK, int from, int to) {
+            this.generation = generation;
+            this.engine = engine;
+            this.maxK = maxK;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if(isOutdated(generation)) return new long[maxK];
+
+            if(to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Chunk left = new Chunk(generation, engine, maxK, from, middle);
+                left.fork();
+                long[] correct = new Chunk(generation, engine, maxK, middle, to).compute();
+                long[] leftCorrect = left.join();
+                for(int i = 0; i < maxK; i++) {
+                    correct[i] += leftCorrect[i];
+                }
+                return correct;
+            }
+
+            long[] correct = new long[maxK];
+            TopKSelector selector = new TopKSelector();
+            int[] votes = new int[MathUtils.VOTES];
+            for(int id = from; id < to; id++) {
+                Sample sample = engine.sample(id);
+                engine.nearest(sample.getX(), sample.getY(), maxK + 1, selector);
+
+                // voting for k is the voting for k - 1 with one more neighbour: if some class has more votes
+                // than all other ones it wins, otherwise the result for k - 1 stays (like in MathUtils.vote)
+                Arrays.fill(votes, 0);
+                int predicted = 0, mostVotes = 0, classesWithMostVotes = 0;
+                for(int i = 0, k = 1; k <= maxK; k++) {
+                    // the sample itself is skipped
+                    while(i < selector.size() && selector.id(i) == id) i++;
+                    if(i < selector.size()) {
+                        int category = engine.sample(selector.id(i++)).category();
+                        int count = ++votes[category - 1];
+                        if(count > mostVotes) {
+                            mostVotes = count;
+                            classesWithMostVotes = 1;
+                        } else if(count == mostVotes) {
+                            classesWithMostVotes++;
+                        }
+                        if(classesWithMostVotes == 1 && count == mostVotes) predicted = category;
+                    }
+                    if(predicted == sample.category()) correct[k - 1]++;
+                }
+            }
+            return correct;
+        }
+    }
+
+    private boolean isOutdated(int generation) {
+        return this.generation.get() != generation;
+    }
+
+    /**
+     * Starts the cross-validation if the engine has changed since the last request.
+     * Returns immediately, the plane is asked to redraw itself after every chunk of samples.
+     * @param plane - KNN simulation
+     * @param engine - exact engine of training samples (it can't be changed while the validation runs)
+     * @param maxK - the largest checked k
+     */
+    void request(CoordinateSystem plane, NeighbourEngine engine, int maxK) {
+        if(engine == requestedEngine && maxK == requestedMaxK) return;
+
+        cancel();
+        requestedEngine = engine;
+        requestedMaxK = maxK;
+        int current = generation.get();
+
+        job = pool.submit(() -> {
+            int total = engine.size();
+            long[] correct = new long[maxK];
+            for(int from = 0; from < total; from += CHUNK_SIZE) {
+                int to = Math.min(total, from + CHUNK_SIZE);
+                long[] chunkCorrect = new Chunk(current, engine, maxK, from, to).invoke();
+                if(isOutdated(current)) return;
+
+                for(int i = 0; i < maxK; i++) {
+                    correct[i] += chunkCorrect[i];
+                }
+                result = new Result(current, correct, to, total);
+                version.incrementAndGet();
+                EventQueue.invokeLater(plane::requestRedraw);
+            }
+        });
+    }
+
+    /**
+     * Stops the validation of the last request and forgets its result (it's not valid for the new training set).
+     */
+    void cancel() {
+        if(requestedEngine == null && result == null) return;
+
+        generation.incrementAndGet();
+        if(job != null) {
+            job.cancel(false);
+            job = null;
+        }
+        requestedEngine = null;
+        result = null;
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return number which changes every time a new result is published (or the result is forgotten)
+     */
+    int version() {
+        return version.get();
+    }
+
+    /**
+     * @return accuracy of samples checked so far or null if nothing is checked yet (or the validation was cancelled)
+     */
+    Result result() {
+        Result current = result;
+        return current != null && current.generation == generation.get() ? current : null;
+    }
+}
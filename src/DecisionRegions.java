@@ -0,0 +1,240 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shades the plane of the KNN simulation by the class which would be predicted for every point of the screen.
+ * Points are classified in the background on the fork-join pool, tile by tile. First the plane is classified
+ * in big cells (fast, but blocky) and then in small ones. The last finished level is kept and drawn
+ * (also moved and scaled with the camera) until the next one is ready.
+ * In the regression mode the plane is shaded by the predicted value instead (a heat map).
+ * Result depends on the camera, the scale, k, the mode, the training set and the metric (the engine). When any of them changes
+ * tiles of the previous request stop working and new ones are started.
+ */
+class DecisionRegions {
+    // sizes of cells in pixels of the next levels of detail
+    private static final int[] CELL_SIZES = {8, 2};
+    // tiles with more cells are divided into two
+    private static final int TILE_CELLS = 32*32;
+    private static final int ALPHA = 70;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    // every request gets the next number, tiles of older requests stop working
+    private final AtomicInteger generation = new AtomicInteger();
+    private ForkJoinTask<?> job;
+    // engine and the rest of the state of the last request
+    private NeighbourEngine requestedEngine;
+    private long requestedState;
+
+    // the last finished level of detail, published by the pool thread
+    private volatile Result result;
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * Classified cells of one level of detail and the camera for which they were computed.
+     */
+    private static class Result {
+        final BufferedImage image;
+        final int columns, rows, cellSize;
+        final double cameraX, cameraY, scale;
+
+        Result(Level level) {
+            image = level.image;
+            columns = level.columns;
+            rows = level.rows;
+            cellSize = level.cellSize;
+            cameraX = level.cameraX;
+            cameraY = level.cameraY;
+            scale = level.scale;
+        }
+    }
+
+    /**
+     * One level of detail of one request. Tiles write colors of their cells to the image of the level.
+     */
+    private class Level {
+        final int generation, k, cellSize, columns, rows;
+        final MathUtils.KNNMode mode;
+        final MathUtils.ValueRange range;
+        final NeighbourEngine engine;
+        final double cameraX, cameraY, scale;
+        final BufferedImage image;
+        final int[] pixels;
+        final int[] palette;
+
+        Level(int generation, NeighbourEngine engine, int k, MathUtils.KNNMode mode, MathUtils.ValueRange range, double cameraX, double cameraY, double scale, int width, int height, int cellSize) {
+            this.generation = generation;
+            this.engine = engine;
+            this.k = k;
+            this.mode = mode;
+            this.range = range;
+            this.cameraX = cameraX;
+            this.cameraY = cameraY;
+            this.scale = scale;
+            this.cellSize = cellSize;
+            columns = (width + cellSize - 1) / cellSize;
+            rows = (height + cellSize - 1) / cellSize;
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+            Color[] colors = mode == MathUtils.KNNMode.CLASSIFICATION ? DrawUtils.sampleColors : DrawUtils.heatColors;
+            palette = new int[colors.length];
+            for(int i = 0; i < palette.length; i++) {
+                palette[i] = ALPHA << 24 | (colors[i].getRGB() & 0xFFFFFF);
+            }
+        }
+
+        boolean isCancelled() {
+            return DecisionRegions.this.generation.get() != generation;
+        }
+    }
+
+    /**
+     * Rectangle of cells [fromColumn, toColumn) x [fromRow, toRow) classified by one task.
+     */
+    @SuppressWarnings("serial")
+    private static class Tile extends RecursiveAction {
+        private final Level level;
+        private final int fromColumn, toColumn, fromRow, toRow;
+
+        Tile(Level level, int fromColumn, int toColumn, int fromRow, int toRow) {
+            this.level = level;
+            this.fromColumn = fromColumn;
+            this.toColumn = toColumn;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if(level.isCancelled()) return;
+
+            int columns = toColumn - fromColumn, rows = toRow - fromRow;
+            if(columns*rows > TILE_CELLS) {
+                if(columns >= rows) {
+                    int middle = fromColumn + columns/2;
+                    invokeAll(new Tile(level, fromColumn, middle, fromRow, toRow),
+                            new Tile(level, middle, toColumn, fromRow, toRow));
+                } else {
+                    int middle = fromRow + rows/2;
+                    invokeAll(new Tile(level, fromColumn, toColumn, fromRow, middle),
+                            new Tile(level, fromColumn, toColumn, middle, toRow));
+                }
+                return;
+            }
+
+            // every tile has its own buffers, so tiles don't share anything except the engine (which is only read)
+            TopKSelector selector = new TopKSelector();
+            int[] categories = new int[level.k];
+            double[] values = new double[level.k];
+            double[] distances = new double[level.k];
+            int[] votes = new int[MathUtils.VOTES];
+            boolean weighted = level.mode == MathUtils.KNNMode.WEIGHTED_REGRESSION;
+            double cell = level.cellSize / level.scale;
+
+            for(int row = fromRow; row < toRow; row++) {
+                if(level.isCancelled()) return;
+                double y = level.cameraY - (row + 0.5)*cell;
+
+                for(int column = fromColumn; column < toColumn; column++) {
+                    double x = level.cameraX + (column + 0.5)*cell;
+                    level.engine.nearest(x, y, level.k, selector);
+                    for(int i = 0; i < selector.size(); i++) {
+                        Sample neighbour = level.engine.sample(selector.id(i));
+                        categories[i] = neighbour.category();
+                        values[i] = neighbour.getValue();
+                        if(weighted) distances[i] = level.engine.distance(selector.distance(i));
+                    }
+                    int color;
+                    if(level.mode == MathUtils.KNNMode.CLASSIFICATION) {
+                        color = MathUtils.vote(categories, selector.size(), level.k, votes);
+                    } else {
+                        double value = MathUtils.average(values, distances, selector.size(), weighted);
+                        color = level.range.heatIndex(value);
+                    }
+                    level.pixels[row*level.columns + column] = level.palette[color];
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts classifying the visible plane if the camera, the scale, k, the mode or the engine have changed since the last request.
+     * Returns immediately, the plane is asked to redraw itself when the next level of detail is ready.
+     * @param plane - KNN simulation
+     * @param engine - exact engine of training samples in the current metric (it can't be changed while regions are computed)
+     * @param k - how many neighbours are counted in voting
+     * @param mode - classification (regions of classes) or regression (heat map of values)
+     * @param range - values of training samples of the engine (only for regression)
+     */
+    void request(CoordinateSystem plane, NeighbourEngine engine, int k, MathUtils.KNNMode mode, MathUtils.ValueRange range) {
+        double cameraX = plane.camera.x, cameraY = plane.camera.y, scale = plane.scale;
+        int width = plane.width, height = plane.height;
+        long state = Layer.combine(Layer.combine(Layer.combine(Layer.combine(Layer.combine(Layer.combine(k, cameraX), cameraY), scale),
+                width), height), mode.ordinal());
+        state = Layer.combine(Layer.combine(state, range.min), range.max);
+        if(engine == requestedEngine && state == requestedState) return;
+
+        cancel();
+        requestedEngine = engine;
+        requestedState = state;
+        int current = generation.get();
+
+        job = pool.submit(() -> {
+            for(int cellSize: CELL_SIZES) {
+                Level level = new Level(current, engine, k, mode, range, cameraX, cameraY, scale, width, height, cellSize);
+                new Tile(level, 0, level.columns, 0, level.rows).invoke();
+                if(level.isCancelled()) return;
+
+                result = new Result(level);
+                version.incrementAndGet();
+                EventQueue.invokeLater(plane::requestRedraw);
+            }
+        });
+    }
+
+    /**
+     * Stops computing regions of the last request. The last finished level is still drawn.
+     */
+    void cancel() {
+        generation.incrementAndGet();
+        if(job != null) {
+            job.cancel(false);
+            job = null;
+        }
+        requestedEngine = null;
+    }
+
+    /**
+     * @return number which changes every time the next level of detail is ready
+     */
+    int version() {
+        return version.get();
+    }
+
+    /**
+     * Draws the last finished level of detail. If the camera has moved since it was requested,
+     * the image is moved and scaled, so it stays in the right place until the new one is ready.
+     * @param plane - KNN simulation
+     */
+    void draw(CoordinateSystem plane) {
+        Result current = result;
+        if(current == null) return;
+
+        double size = current.cellSize * plane.scale / current.scale;
+        double left = plane.screenX(current.cameraX);
+        double top = plane.screenY(current.cameraY);
+
+        Object interpolation = DrawUtils.g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        DrawUtils.g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        DrawUtils.g2.drawImage(current.image, (int)left, (int)top, (int)(left + current.columns*size),
+                (int)(top + current.rows*size), 0, 0, current.columns, current.rows, null);
+        if(interpolation != null) {
+            DrawUtils.g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Level of detail for many samples. Counts samples of every class in square bins aligned to the cartesian plane
+ * and draws the counts as a colored heat image instead of drawing every sample.
+ * Size of the bin is a power of two close to {@code PIXELS_PER_BIN} pixels, so the grid is built again
+ * only when the scale changes a lot. Otherwise it is updated sample by sample when samples are added, removed,
+ * moved or painted.
+ */
+class DensityGrid {
+    // samples per pixel of the screen above which samples are drawn as density
+    static final double THRESHOLD = readThreshold(0.02);
+    private static final int PIXELS_PER_BIN = 2;
+    private static final int CLASSES = DrawUtils.sampleColors.length;
+
+    // bin and class in which the sample is counted
+    private static class Entry {
+        long bin;
+        int category;
+    }
+
+    /**
+     * Reads the threshold from the system property mv.lodThreshold. Like {@code Integer.getInteger} (used for mv.fps)
+     * it falls back to the default value if the property is missing or malformed, also if it isn't a positive number.
+     * @param defaultValue - threshold used without a correct property
+     * @return samples per pixel above which samples are drawn as density
+     */
+    private static double readThreshold(double defaultValue) {
+        String property = System.getProperty("mv.lodThreshold");
+        if(property == null) return defaultValue;
+        try {
+            double value = Double.parseDouble(property);
+            return value > 0 && !Double.isInfinite(value) ? value : defaultValue;
+        } catch(NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private final HashMap<Sample, Entry> entries = new HashMap<>();
+    // number of samples of every class in every bin
+    private final HashMap<Long, int[]> bins = new HashMap<>();
+    private double binSize = 1;
+    private BufferedImage image;
+    private int[] pixels;
+    // bins which cover the screen: the upper-left one and the number of columns and rows, see coverScreen
+    private long firstColumn, firstRow;
+    private int columns, rows;
+
+    // receives a visible bin, its position on the screen (in bins) and counts of classes in it
+    private interface BinVisitor {
+        void visit(int column, int row, int[] counts);
+    }
+
+    private long bin(double x, double y) {
+        return key((long)Math.floor(x / binSize), (long)Math.floor(y / binSize));
+    }
+
+    private static long key(long column, long row) {
+        return (column << 32) ^ (row & 0xFFFFFFFFL);
+    }
+
+    private void count(long bin, int category, int difference) {
+        int[] counts = bins.computeIfAbsent(bin, k -> new int[CLASSES + 1]);
+        counts[category] += difference;
+        // the last cell is the number of all samples in the bin
+        counts[CLASSES] += difference;
+        if(counts[CLASSES] == 0) bins.remove(bin);
+    }
+
+    void add(Sample sample) {
+        Entry entry = new Entry();
+        entry.bin = bin(sample.getX(), sample.getY());
+        entry.category = sample.category();
+        entries.put(sample, entry);
+        count(entry.bin, entry.category, 1);
+    }
+
+    void remove(Sample sample) {
+        Entry entry = entries.remove(sample);
+        if(entry != null) count(entry.bin, entry.category, -1);
+    }
+
+    /**
+     * Moves the sample to the right bin and class after its position or class has changed.
+     * Samples which were not added to the grid are ignored.
+     * @param sample - changed sample
+     */
+    void update(Sample sample) {
+        Entry entry = entries.get(sample);
+        if(entry == null) return;
+
+        long bin = bin(sample.getX(), sample.getY());
+        if(bin != entry.bin || sample.category() != entry.category) {
+            count(entry.bin, entry.category, -1);
+            entry.bin = bin;
+            entry.category = sample.category();
+            count(entry.bin, entry.category, 1);
+        }
+    }
+
+    /**
+     * @param plane - coordinate system with the grid
+     * @return true if there are so many samples on the screen that they should be drawn as density
+     */
+    boolean isNeeded(CoordinateSystem plane) {
+        adjustBinSize(plane.scale);
+        coverScreen(plane);
+        long[] visibleSamples = new long[1];
+        forEachVisibleBin((column, row, counts) -> visibleSamples[0] += counts[CLASSES]);
+        return visibleSamples[0] / ((double)plane.width * plane.height) > THRESHOLD;
+    }
+
+    /**
+     * Finds bins which cover the screen.
+     * @param plane - coordinate system with the grid
+     */
+    private void coverScreen(CoordinateSystem plane) {
+        firstColumn = (long)Math.floor(plane.camera.x / binSize);
+        firstRow = (long)Math.floor(plane.camera.y / binSize);
+        columns = (int)Math.ceil(plane.width / (binSize*plane.scale)) + 1;
+        rows = (int)Math.ceil(plane.height / (binSize*plane.scale)) + 1;
+    }
+
+    /**
+     * Visits non-empty bins on the screen (found by {@code coverScreen}). It takes time proportional to
+     * the smaller of the number of non-empty bins and the number of bins on the screen, never to all samples.
+     */
+    private void forEachVisibleBin(BinVisitor visitor) {
+        if(bins.size() < (long)columns*rows) {
+            for(Map.Entry<Long, int[]> bin: bins.entrySet()) {
+                int column = (int)((bin.getKey() >> 32) - firstColumn);
+                // rows go down on the screen
+                int row = (int)(firstRow - bin.getKey().intValue());
+                if(column < 0 || column >= columns || row < 0 || row >= rows) continue;
+
+                visitor.visit(column, row, bin.getValue());
+            }
+        } else {
+            for(int row = 0; row < rows; row++) {
+                for(int column = 0; column < columns; column++) {
+                    int[] counts = bins.get(key(firstColumn + column, firstRow - row));
+                    if(counts != null) visitor.visit(column, row, counts);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the size of bins to match the scale and counts all samples again if it has changed.
+     * @param scale - current scale of the coordinate system
+     */
+    private void adjustBinSize(double scale) {
+        double newBinSize = Math.pow(2, Math.ceil(Math.log(PIXELS_PER_BIN / scale) / Math.log(2)));
+        if(newBinSize == binSize) return;
+
+        binSize = newBinSize;
+        bins.clear();
+        for(Map.Entry<Sample, Entry> entry: entries.entrySet()) {
+            entry.getValue().bin = bin(entry.getKey().getX(), entry.getKey().getY());
+            count(entry.getValue().bin, entry.getValue().category, 1);
+        }
+    }
+
+    /**
+     * Draws visible bins. Color of the bin is the mix of colors of classes in it
+     * and it's more opaque when there are more samples in the bin.
+     * @param plane - coordinate system with the grid
+     */
+    void draw(CoordinateSystem plane) {
+        adjustBinSize(plane.scale);
+
+        coverScreen(plane);
+
+        if(image == null || image.getWidth() < columns || image.getHeight() < rows) {
+            image = new BufferedImage(Math.max(columns, image == null ? 0 : image.getWidth()),
+                    Math.max(rows, image == null ? 0 : image.getHeight()), BufferedImage.TYPE_INT_ARGB);
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        }
+        Arrays.fill(pixels, 0);
+
+        // the most crowded bin on the screen is the most opaque one
+        int[] maxCount = {1};
+        forEachVisibleBin((column, row, counts) -> maxCount[0] = Math.max(maxCount[0], counts[CLASSES]));
+        int imageWidth = image.getWidth();
+        forEachVisibleBin((column, row, counts) -> pixels[row*imageWidth + column] = color(counts, maxCount[0]));
+
+        double left = plane.screenX(firstColumn*binSize);
+        double top = plane.screenY((firstRow + 1)*binSize);
+        double size = binSize*plane.scale;
+
+        Object interpolation = DrawUtils.g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        DrawUtils.g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        DrawUtils.g2.drawImage(image, (int)left, (int)top, (int)(left + columns*size), (int)(top + rows*size),
+                0, 0, columns, rows, null);
+        if(interpolation != null) {
+            DrawUtils.g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+    }
+
+    /**
+     * @param counts - number of samples of every class in the bin
+     * @param maxCount - the biggest number of samples in one visible bin
+     * @return ARGB color of the bin
+     */
+    private static int color(int[] counts, int maxCount) {
+        double red = 0, green = 0, blue = 0;
+        for(int i = 0; i < CLASSES; i++) {
+            if(counts[i] == 0) continue;
+            Color color = DrawUtils.sampleColors[i];
+            red += color.getRed()*counts[i];
+            green += color.getGreen()*counts[i];
+            blue += color.getBlue()*counts[i];
+        }
+        int total = counts[CLASSES];
+        // logarithmic, so single samples are still visible next to dense clusters
+        int alpha = (int)(80 + 175*Math.log1p(total) / Math.log1p(maxCount));
+        return alpha << 24 | (int)(red/total) << 16 | (int)(green/total) << 8 | (int)(blue/total);
+    }
+}
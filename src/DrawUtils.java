@@ -2,8 +2,11 @@ import java.awt.*;
 import java.awt.Rectangle;
 import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * Class that has a lot of utility functions for drawing on the screen.
@@ -50,6 +53,30 @@ public class DrawUtils {
             new Color(50, 200, 200)
     };
 
+    // colors of values from the lowest (blue) to the highest (red), used by KNN regression
+    static final Color[] heatColors = new Color[256];
+    static {
+        for(int i = 0; i < heatColors.length; i++) {
+            double t = (double)i / (heatColors.length - 1);
+            // blue -> cyan -> green -> yellow -> red
+            double red = MathUtils.clamp(4*t - 2, 0, 1);
+            double green = MathUtils.clamp(Math.min(4*t, 4 - 4*t), 0, 1);
+            double blue = MathUtils.clamp(2 - 4*t, 0, 1);
+            heatColors[i] = new Color((int)(255*red), (int)(255*green), (int)(255*blue));
+        }
+    }
+
+    /**
+     * @param value - value which is shown
+     * @param min - value shown as blue
+     * @param max - value shown as red
+     * @return index of the color of the value in {@code heatColors} (the middle one if min and max are equal)
+     */
+    static int heatIndex(double value, double min, double max) {
+        if(max <= min) return heatColors.length / 2;
+        return (int)Math.round(MathUtils.clamp((value - min) / (max - min), 0, 1) * (heatColors.length - 1));
+    }
+
     static Color[] darkPalette = new Color[] { black, transparentBlack, white, orange, darkGray };
     static Color[] lightPalette = new Color[] { white, transparentWhite, black, lightRed, darkRed};
 
@@ -100,6 +127,16 @@ public class DrawUtils {
         g2.drawOval((int)(x-r), (int)(y-r), (int)(2*r), (int)(2*r));
     }
 
+    /**
+     * Draws the outline of a polygon on the screen.
+     * @param xs - x coordinates of vertices (in pixels)
+     * @param ys - y coordinates of vertices (in pixels)
+     * @param n - number of vertices
+     */
+    static void polygon(int[] xs, int[] ys, int n) {
+        g2.drawPolygon(xs, ys, n);
+    }
+
     /**
      * Draws a straight line on the screen. Converts double to int.
      * @param x1 - x coordinate of first end of the line
@@ -111,6 +148,43 @@ public class DrawUtils {
         g2.drawLine((int)x1, (int)y1, (int)x2, (int)y2);
     }
 
+    /**
+     * Draws only the part of the line which is inside the rectangle [0, width] x [0, height] (with small margin),
+     * so coordinates of points far outside the screen are never converted to int (Liang-Barsky algorithm).
+     * @param x1 - x coordinate of first end of the line
+     * @param y1 - y coordinate of first end of the line
+     * @param x2 - x coordinate of second end of the line
+     * @param y2 - y coordinate of second end of the line
+     * @param width - width of the screen
+     * @param height - height of the screen
+     */
+    static void clippedLine(double x1, double y1, double x2, double y2, int width, int height) {
+        // margin, so the thick line doesn't end visibly at the border of the screen
+        final double MARGIN = 10;
+        double dx = x2 - x1, dy = y2 - y1;
+        double enter = 0, leave = 1;
+
+        // borders: left, right, top, bottom
+        for(int i = 0; i < 4; i++) {
+            double p = i == 0 ? -dx : i == 1 ? dx : i == 2 ? -dy : dy;
+            double q = i == 0 ? x1 + MARGIN : i == 1 ? width + MARGIN - x1 : i == 2 ? y1 + MARGIN : height + MARGIN - y1;
+            if(p == 0) {
+                // parallel to this border and outside of it
+                if(q < 0) return;
+            } else {
+                double t = q / p;
+                if(p < 0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    leave = Math.min(leave, t);
+                }
+            }
+        }
+        if(enter > leave) return;
+
+        line(x1 + enter*dx, y1 + enter*dy, x1 + leave*dx, y1 + leave*dy);
+    }
+
     /**
      * Draws centered string on the screen. it centers horizontal alignment as well as vertical.
      * @param text - text to be drawn
@@ -163,6 +237,104 @@ public class DrawUtils {
         g2.drawString(text, leftSide, y);
     }
 
+    // Cache of strokes, fonts and colors. Drawing code takes them from here instead of creating new objects in every frame.
+    // strokes indexed by width
+    private static BasicStroke[] strokes = new BasicStroke[8];
+    // fonts indexed by name and then by size*4 + style
+    private static final HashMap<String, Font[]> fonts = new HashMap<>();
+    // open addressing hash table of colors, keys are ARGB values
+    private static int[] colorKeys = new int[256];
+    private static Color[] colorValues = new Color[256];
+    private static int colorsCount = 0;
+
+    /**
+     * @param width - width of the line
+     * @return cached stroke with given width
+     */
+    static BasicStroke stroke(int width) {
+        if(width >= strokes.length) {
+            strokes = Arrays.copyOf(strokes, Math.max(width + 1, strokes.length*2));
+        }
+        if(strokes[width] == null) {
+            strokes[width] = new BasicStroke(width);
+        }
+        return strokes[width];
+    }
+
+    /**
+     * @param name - name of the font
+     * @param style - style of the font (e.g. {@code Font.PLAIN})
+     * @param size - size of the font
+     * @return cached font with given name, style and size
+     */
+    static Font font(String name, int style, int size) {
+        Font[] sizes = fonts.get(name);
+        int index = size*4 + style;
+        if(sizes == null || index >= sizes.length) {
+            sizes = sizes == null ? new Font[Math.max(index + 1, 128)] : Arrays.copyOf(sizes, Math.max(index + 1, sizes.length*2));
+            fonts.put(name, sizes);
+        }
+        if(sizes[index] == null) {
+            sizes[index] = new Font(name, style, size);
+        }
+        return sizes[index];
+    }
+
+    /**
+     * @param red - red component (0-255)
+     * @param green - green component (0-255)
+     * @param blue - blue component (0-255)
+     * @param alpha - alpha component (0-255)
+     * @return cached color with given components
+     */
+    static Color color(int red, int green, int blue, int alpha) {
+        int argb = (alpha & 255) << 24 | (red & 255) << 16 | (green & 255) << 8 | (blue & 255);
+        int mask = colorKeys.length - 1;
+        int i = (argb * 0x9E3779B9 >>> 16) & mask;
+        while(colorValues[i] != null) {
+            if(colorKeys[i] == argb) return colorValues[i];
+            i = (i + 1) & mask;
+        }
+
+        Color color = new Color(red, green, blue, alpha);
+        colorKeys[i] = argb;
+        colorValues[i] = color;
+        if(++colorsCount*2 > colorKeys.length) {
+            growColors();
+        }
+        return color;
+    }
+
+    /**
+     * @param color - base color
+     * @param alpha - new alpha component (0-255)
+     * @return cached color with the same red, green and blue components as given color but with different alpha
+     */
+    static Color withAlpha(Color color, int alpha) {
+        return color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+    }
+
+    /**
+     * Doubles the size of the color table (it is never more than half full).
+     */
+    private static void growColors() {
+        int[] oldKeys = colorKeys;
+        Color[] oldValues = colorValues;
+        colorKeys = new int[oldKeys.length*2];
+        colorValues = new Color[oldValues.length*2];
+        int mask = colorKeys.length - 1;
+
+        for(int j = 0; j < oldValues.length; j++) {
+            if(oldValues[j] == null) continue;
+            int i = (oldKeys[j] * 0x9E3779B9 >>> 16) & mask;
+            while(colorValues[i] != null) {
+                i = (i + 1) & mask;
+            }
+            colorKeys[i] = oldKeys[j];
+            colorValues[i] = oldValues[j];
+        }
+    }
+
     static void registerFont(String fontName) {
         try {
             GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
@@ -182,6 +354,18 @@ public class DrawUtils {
         g2 = passedG2;
     }
 
+    /**
+     * Creates graphics engine which draws on the given image. Antialiasing is turned on
+     * for better graphics quality. Used by the panel and by the offscreen renderer.
+     * @param image - image on which everything will be drawn
+     * @return graphics engine of the image
+     */
+    static Graphics2D prepareGraphics(Image image) {
+        Graphics2D graphics = (Graphics2D) image.getGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return graphics;
+    }
+
     /**
      * @param text - text to be drawn
      * @return the width of the string written with current font on the screen.
@@ -0,0 +1,134 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how long each phase of the frame takes (drawing layers, updating the simulation, handling input).
+ * Every phase keeps last {@code CAPACITY} timings (in nanoseconds) in a ring buffer without locks,
+ * so it can be used from the event thread and the render loop at the same time.
+ * Statistics (percentiles and maximum) are computed from the timings in the buffer and can be shown
+ * on the screen with {@code drawHud}.
+ */
+class FrameProfiler {
+    /**
+     * Measured parts of the frame.
+     */
+    enum Phase {
+        FRAME("frame"),
+        BACKGROUND("grid"),
+        DATA("samples"),
+        INTERFACE("interface"),
+        UPDATE("update"),
+        DRAG("drag"),
+        RIGHT_CLICK("right click");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    // has to be a power of two
+    private static final int CAPACITY = 512;
+    private static final AtomicLongArray[] timings = new AtomicLongArray[Phase.values().length];
+    private static final AtomicInteger[] cursors = new AtomicInteger[Phase.values().length];
+    private static volatile boolean hudVisible = false;
+
+    static {
+        for(int i = 0; i < timings.length; i++) {
+            timings[i] = new AtomicLongArray(CAPACITY);
+            cursors[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @return time of the beginning of some phase, has to be passed to {@code record}
+     */
+    static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Saves the time of the phase that started at {@code startNanos}. The oldest timing is overwritten.
+     * @param phase - measured phase
+     * @param startNanos - value returned by {@code start}
+     */
+    static void record(Phase phase, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        int index = cursors[phase.ordinal()].getAndIncrement() & (CAPACITY - 1);
+        timings[phase.ordinal()].set(index, elapsed);
+    }
+
+    /**
+     * Copies saved timings of the phase and sorts them.
+     * @param phase - measured phase
+     * @return sorted timings (in nanoseconds), empty if the phase has never been measured
+     */
+    static long[] sortedTimings(Phase phase) {
+        int count = Math.min(cursors[phase.ordinal()].get(), CAPACITY);
+        long[] result = new long[count];
+        for(int i = 0; i < count; i++) {
+            result[i] = timings[phase.ordinal()].get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @param sorted - sorted timings
+     * @param percent - percentile from 0 to 100
+     * @return timing (in nanoseconds) below which lies given percent of timings, 0 if there are no timings
+     */
+    static long percentile(long[] sorted, double percent) {
+        if(sorted.length == 0) return 0;
+        int index = (int)Math.ceil(percent/100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * @return true if statistics are drawn on the screen
+     */
+    static boolean isHudVisible() {
+        return hudVisible;
+    }
+
+    static void toggleHud() {
+        hudVisible = !hudVisible;
+    }
+
+    /**
+     * Draws a table with p50, p95, p99 and maximum of every phase (in milliseconds) in the lower right corner.
+     * @param width - width of the screen
+     * @param height - height of the screen
+     */
+    static void drawHud(int width, int height) {
+        final int rowHeight = 18, columnWidth = 60, labelWidth = 90;
+        final int hudWidth = labelWidth + 4*columnWidth, hudHeight = rowHeight*(Phase.values().length + 1) + 10;
+        int x = width - hudWidth - 10;
+        int y = height - hudHeight - 10;
+
+        DrawUtils.g2.setColor(DrawUtils.color(0, 0, 0, 180));
+        DrawUtils.g2.fillRect(x, y, hudWidth, hudHeight);
+        DrawUtils.g2.setFont(DrawUtils.font(Font.MONOSPACED, Font.PLAIN, 12));
+        DrawUtils.g2.setColor(Color.WHITE);
+
+        String[] header = {"p50", "p95", "p99", "max"};
+        for(int i = 0; i < header.length; i++) {
+            DrawUtils.g2.drawString(header[i], x + labelWidth + i*columnWidth, y + rowHeight);
+        }
+
+        for(Phase phase: Phase.values()) {
+            int rowY = y + rowHeight*(phase.ordinal() + 2);
+            long[] sorted = sortedTimings(phase);
+            long[] values = {percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1]};
+
+            DrawUtils.g2.drawString(phase.label, x + 5, rowY);
+            for(int i = 0; i < values.length; i++) {
+                DrawUtils.g2.drawString(String.format("%.2f", values[i]/1e6), x + labelWidth + i*columnWidth, rowY);
+            }
+        }
+    }
+}
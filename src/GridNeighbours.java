@@ -0,0 +1,198 @@
+import java.util.List;
+
+/**
+ * Approximate engine for KNN with millions of training samples. Samples are hashed into a uniform grid
+ * (about {@code SAMPLES_PER_CELL} samples per cell) and stored cell by cell in flat arrays.
+ * A query checks rings of cells around the point until it has k candidates and then only
+ * {@code accuracy - 1} more rings, so far neighbours in sparse areas can be missed.
+ * Higher accuracy is slower but misses less. The search stops earlier (with the exact result)
+ * if the next ring is farther than the farthest candidate.
+ */
+class GridNeighbours implements NeighbourEngine {
+    static final int MAX_ACCURACY = 5;
+    private static final double SAMPLES_PER_CELL = 2;
+
+    private final Sample[] samples;
+    private final double minX, minY, cellSize;
+    private final int columns, rows;
+    // samples of the cell c are on positions [cellStart[c], cellStart[c+1]) of xs, ys and ids
+    private final int[] cellStart;
+    private final double[] xs, ys;
+    private final int[] ids;
+    private volatile int accuracy = 1;
+    // id of the training sample which is being dragged or -1
+    private int movedId = -1;
+
+    GridNeighbours(List<Sample> training) {
+        int n = training.size();
+        samples = training.toArray(new Sample[0]);
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(Sample sample: samples) {
+            minX = Math.min(minX, sample.getX());
+            minY = Math.min(minY, sample.getY());
+            maxX = Math.max(maxX, sample.getX());
+            maxY = Math.max(maxY, sample.getY());
+        }
+        if(n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+
+        double area = Math.max((maxX - minX)*(maxY - minY), 1e-9);
+        double size = Math.sqrt(area * SAMPLES_PER_CELL / Math.max(n, 1));
+        // very thin sets of samples would get too many cells
+        size = Math.max(size, Math.max(maxX - minX, maxY - minY) / Math.max(n, 1));
+        cellSize = size > 0 ? size : 1;
+        columns = (int)((maxX - minX) / cellSize) + 1;
+        rows = (int)((maxY - minY) / cellSize) + 1;
+
+        // counting sort of samples by cells
+        int[] cellOf = new int[n];
+        cellStart = new int[columns*rows + 1];
+        for(int i = 0; i < n; i++) {
+            cellOf[i] = cell(samples[i].getX(), samples[i].getY());
+            cellStart[cellOf[i] + 1]++;
+        }
+        for(int c = 0; c < columns*rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = new int[columns*rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        xs = new double[n];
+        ys = new double[n];
+        ids = new int[n];
+        for(int i = 0; i < n; i++) {
+            int position = next[cellOf[i]]++;
+            xs[position] = samples[i].getX();
+            ys[position] = samples[i].getY();
+            ids[position] = i;
+        }
+    }
+
+    private int column(double x) {
+        return (int)Math.max(0, Math.min(columns - 1, Math.floor((x - minX) / cellSize)));
+    }
+
+    private int row(double y) {
+        return (int)Math.max(0, Math.min(rows - 1, Math.floor((y - minY) / cellSize)));
+    }
+
+    private int cell(double x, double y) {
+        return row(y)*columns + column(x);
+    }
+
+    /**
+     * @param accuracy - how many rings of cells are checked after k candidates are found (1 - {@code MAX_ACCURACY})
+     */
+    void setAccuracy(int accuracy) {
+        this.accuracy = Math.max(1, Math.min(MAX_ACCURACY, accuracy));
+    }
+
+    @Override
+    public void nearest(double x, double y, int k, TopKSelector selector) {
+        selector.reset(k);
+        if(k > 0 && samples.length > 0) {
+            search(x, y, selector);
+            if(movedId != -1) {
+                double dx = samples[movedId].getX() - x, dy = samples[movedId].getY() - y;
+                selector.offer(dx*dx + dy*dy, movedId);
+            }
+        }
+        selector.sort();
+    }
+
+    private void search(double x, double y, TopKSelector selector) {
+        int column = column(x), row = row(y);
+        int maxRing = Math.max(columns, rows);
+        int extraRings = accuracy - 1;
+
+        for(int ring = 0; ring <= maxRing; ring++) {
+            int fromColumn = column - ring, toColumn = column + ring;
+            int fromRow = row - ring, toRow = row + ring;
+            for(int r = Math.max(0, fromRow); r <= Math.min(rows - 1, toRow); r++) {
+                if(r == fromRow || r == toRow) {
+                    // cells of one row are next to each other in arrays, so the whole edge row is one range
+                    int first = r*columns + Math.max(0, fromColumn), last = r*columns + Math.min(columns - 1, toColumn);
+                    if(first <= last) offerRange(cellStart[first], cellStart[last + 1], x, y, selector);
+                } else {
+                    // inside rows of the ring have only the first and the last cell
+                    if(fromColumn >= 0) offerCell(r*columns + fromColumn, x, y, selector);
+                    if(toColumn < columns && toColumn != fromColumn) offerCell(r*columns + toColumn, x, y, selector);
+                }
+            }
+
+            // the nearest point outside of checked cells
+            double outside = Math.min(Math.min(x - (minX + fromColumn*cellSize), minX + (toColumn + 1)*cellSize - x),
+                    Math.min(y - (minY + fromRow*cellSize), minY + (toRow + 1)*cellSize - y));
+            if(outside > 0 && outside*outside > selector.worst()) return;
+
+            if(selector.isFull()) {
+                if(extraRings == 0) return;
+                extraRings--;
+            }
+        }
+    }
+
+    private void offerCell(int cell, double x, double y, TopKSelector selector) {
+        offerRange(cellStart[cell], cellStart[cell + 1], x, y, selector);
+    }
+
+    /**
+     * Offers samples on positions [from, to). Their distances are computed first by the batched kernel.
+     */
+    private void offerRange(int from, int to, double x, double y, TopKSelector selector) {
+        double[] distances = selector.buffer(to - from);
+        MathKernels.squaredDistances(xs, ys, from, to, x, y, distances);
+        for(int i = from; i < to; i++) {
+            if(ids[i] != movedId) selector.offer(distances[i - from], ids[i]);
+        }
+    }
+
+    @Override
+    public Sample sample(int id) {
+        return samples[id];
+    }
+
+    @Override
+    public Metric metric() {
+        return Metric.EUCLIDEAN;
+    }
+
+    /**
+     * @param key - squared euclidean distance
+     * @return euclidean distance
+     */
+    @Override
+    public double distance(double key) {
+        return Math.sqrt(key);
+    }
+
+    @Override
+    public int size() {
+        return samples.length;
+    }
+
+    @Override
+    public boolean setMoved(Sample sample) {
+        for(int id = 0; id < samples.length; id++) {
+            if(samples[id] == sample) {
+                movedId = id;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clearMoved() {
+        movedId = -1;
+    }
+
+    @Override
+    public boolean hasMoved() {
+        return movedId != -1;
+    }
+}
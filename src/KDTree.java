@@ -0,0 +1,200 @@
+import java.util.List;
+
+/**
+ * Two dimensional tree over training samples used by the KNN algorithm.
+ * Samples are kept in arrays ordered like an implicit balanced tree: the middle sample of every range
+ * splits it (by x on even depths and by y on odd ones) into the left and the right part.
+ * Building takes O(n log n) and should be done only after the training set has changed.
+ * Finding k nearest neighbours takes O(log n + k) on average. Queries compare squared distances
+ * and don't allocate memory.
+ */
+class KDTree implements NeighbourEngine {
+    // training samples in the original order, ids are positions in this array
+    private final Sample[] samples;
+    // coordinates and ids of samples in the order of the tree
+    private final double[] xs, ys;
+    private final int[] ids;
+    // fingerprint of the training set used to build the tree
+    private final long fingerprint;
+    // id of the training sample which is being dragged or -1, the tree skips it and uses its current position instead
+    private int movedId = -1;
+
+    KDTree(List<Sample> training) {
+        int n = training.size();
+        samples = training.toArray(new Sample[0]);
+        xs = new double[n];
+        ys = new double[n];
+        ids = new int[n];
+        for(int i = 0; i < n; i++) {
+            xs[i] = samples[i].getX();
+            ys[i] = samples[i].getY();
+            ids[i] = i;
+        }
+        fingerprint = fingerprint(training);
+        build(0, n, 0);
+    }
+
+    /**
+     * Value which changes (with very high probability) when some training sample is added, removed, moved
+     * or changes its class or value. Computing it is much faster than building the tree.
+     * @param training - training samples
+     * @return fingerprint of the training set
+     */
+    static long fingerprint(List<Sample> training) {
+        long state = training.size();
+        for(Sample sample: training) {
+            state = state*31 + System.identityHashCode(sample);
+            state = state*31 + Double.doubleToLongBits(sample.getX());
+            state = state*31 + Double.doubleToLongBits(sample.getY());
+            state = state*31 + sample.category();
+            state = state*31 + Double.doubleToLongBits(sample.getValue());
+        }
+        return state;
+    }
+
+    /**
+     * @param training - current training samples
+     * @return true if the tree was built from the same training set
+     */
+    boolean isBuiltFrom(List<Sample> training) {
+        return training.size() == samples.length && fingerprint(training) == fingerprint;
+    }
+
+    @Override
+    public Metric metric() {
+        return Metric.EUCLIDEAN;
+    }
+
+    /**
+     * @param key - squared euclidean distance
+     * @return euclidean distance
+     */
+    @Override
+    public double distance(double key) {
+        return Math.sqrt(key);
+    }
+
+    @Override
+    public int size() {
+        return samples.length;
+    }
+
+    @Override
+    public Sample sample(int id) {
+        return samples[id];
+    }
+
+    @Override
+    public boolean setMoved(Sample sample) {
+        for(int id = 0; id < samples.length; id++) {
+            if(samples[id] == sample) {
+                movedId = id;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clearMoved() {
+        movedId = -1;
+    }
+
+    @Override
+    public boolean hasMoved() {
+        return movedId != -1;
+    }
+
+    /**
+     * Orders the range [from, to) so that its middle element splits it by the coordinate of the given depth
+     * and then does the same with both halves.
+     */
+    private void build(int from, int to, int depth) {
+        if(to - from <= 1) return;
+
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, depth % 2 == 0 ? xs : ys);
+        build(from, middle, depth + 1);
+        build(middle + 1, to, depth + 1);
+    }
+
+    /**
+     * Quickselect: moves elements of range [left, right] so that the element on position nth
+     * is the one which would be there after sorting by given coordinate.
+     */
+    private void select(int left, int right, int nth, double[] coordinate) {
+        while(right > left) {
+            double pivot = coordinate[(left + right) >>> 1];
+            int i = left, j = right;
+            while(i <= j) {
+                while(coordinate[i] < pivot) i++;
+                while(coordinate[j] > pivot) j--;
+                if(i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if(nth <= j) {
+                right = j;
+            } else if(nth >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+        double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+        double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+    }
+
+    /**
+     * Finds k training samples closest to the point (exactly). Equally distant samples are ordered by id.
+     * @param x - x coordinate of the point
+     * @param y - y coordinate of the point
+     * @param k - number of neighbours
+     * @param selector - reused selector which receives the result
+     */
+    @Override
+    public void nearest(double x, double y, int k, TopKSelector selector) {
+        selector.reset(k);
+        if(k > 0) {
+            search(0, samples.length, 0, x, y, selector);
+            if(movedId != -1) {
+                double dx = samples[movedId].getX() - x, dy = samples[movedId].getY() - y;
+                selector.offer(dx*dx + dy*dy, movedId);
+            }
+        }
+        selector.sort();
+    }
+
+    private void search(int from, int to, int depth, double x, double y, TopKSelector selector) {
+        if(from >= to) return;
+
+        int middle = (from + to) >>> 1;
+        double dx = xs[middle] - x, dy = ys[middle] - y;
+        if(ids[middle] != movedId) selector.offer(dx*dx + dy*dy, ids[middle]);
+
+        // difference on the axis which splits this range
+        double split = depth % 2 == 0 ? x - xs[middle] : y - ys[middle];
+        boolean leftFirst = split < 0;
+        if(leftFirst) {
+            search(from, middle, depth + 1, x, y, selector);
+        } else {
+            search(middle + 1, to, depth + 1, x, y, selector);
+        }
+
+        // the other half can have closer samples only if the splitting line is not farther than the farthest neighbour
+        // (equally distant samples can still win by the smaller id)
+        if(split*split <= selector.worst()) {
+            if(leftFirst) {
+                search(middle + 1, to, depth + 1, x, y, selector);
+            } else {
+                search(from, middle, depth + 1, x, y, selector);
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import java.awt.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Class that simulates K-nearest neighbours algorithm.
@@ -9,8 +11,47 @@ import java.util.ArrayList;
  * rings and lines between neutrals samples and their neighbours
  */
 public class KNNCoordinateSystem extends CoordinateSystem {
-    private boolean distancesVisibility, ringsVisibility;
-    private ArrayList<KNNInterface> interfaces = new ArrayList<>();
+    private boolean distancesVisibility, ringsVisibility, regionsVisibility, approximate;
+    // regression mode predicts the mean value of neighbours (see Sample.getValue), optionally weighted by distances
+    private boolean regression, weightedByDistance;
+    // interfaces of neutral samples in the order of samples (the next list is swapped with it during the update),
+    // interface of every neutral sample and interfaces which are active because the mouse is over their samples
+    private ArrayList<KNNInterface> interfaces = new ArrayList<>(), nextInterfaces = new ArrayList<>();
+    private final HashMap<Sample, KNNInterface> interfaceOfSample = new HashMap<>();
+    private final ArrayList<KNNInterface> activeInterfaces = new ArrayList<>();
+    // interfaces of samples which are not neutral anymore, reused for new neutral samples
+    private final ArrayDeque<KNNInterface> unusedInterfaces = new ArrayDeque<>();
+    // number of the update, interfaces which didn't get it are not used anymore
+    private int updateNumber = 0;
+    // reused by every update
+    private final ArrayList<Sample> training = new ArrayList<>(), neutrals = new ArrayList<>();
+    // tree of training samples, built again only when the training set changes (not when k or neutral samples change)
+    private KDTree tree;
+    // approximate engine built from the same training samples as the tree (only in the approximate mode)
+    private GridNeighbours grid;
+    // vantage-point tree of the same training samples for metrics other than the euclidean one
+    private VPTree vpTree;
+    private Metric.Kind metricKind = Metric.Kind.EUCLIDEAN;
+    // engine used by the last update - the tree, the vantage-point tree or the grid
+    private NeighbourEngine engine;
+    // exact engine in the current metric - the tree or the vantage-point tree
+    private NeighbourEngine exactEngine;
+    // the smallest and the largest value of training samples, ends of the heat map of the regression
+    private MathUtils.ValueRange valueRange;
+    // reused when single samples are classified again during dragging
+    private MathUtils.KNNBuffers buffers = new MathUtils.KNNBuffers(1);
+    private final ArrayList<Sample> affected = new ArrayList<>();
+    // rings of interfaces, finds neutral samples which can change when a training sample is dragged
+    private final RingIndex rings = new RingIndex();
+    // predicted classes of the whole plane, computed in the background
+    private final DecisionRegions regions = new DecisionRegions();
+    // accuracy of every k checked by leave-one-out cross-validation in the background
+    private final CrossValidation validation = new CrossValidation();
+    private int shownValidation;
+    // number of neutral samples on which the recall of the approximate mode is measured
+    private static final int RECALL_QUERIES = 200;
+    // the largest k on the slider
+    private static final int MAX_K = 10;
 
     KNNCoordinateSystem(int width, int height, Panel mainPanel) {
         super(width, height, mainPanel);
@@ -33,25 +74,87 @@ public class KNNCoordinateSystem extends CoordinateSystem {
      * Initializes the specific buttons for the side menu
      */
     void initSideMenu() {
-        String[] buttonsLabels = new String[] {StringsResources.distances(), StringsResources.rings()};
-        Boolean[] buttonsValues = new Boolean[] {false, false};
+        String[] buttonsLabels = new String[] {StringsResources.distances(), StringsResources.rings(),
+                StringsResources.regions(), StringsResources.approximate(), StringsResources.regression(),
+                StringsResources.weightedByDistance()};
+        Boolean[] buttonsValues = new Boolean[] {false, false, false, false, false, false};
 
         menu.addCheckBoxButtons(buttonsLabels, buttonsValues, STANDARD_BUTTON_HEIGHT);
-    menu.addSlider("k", 1, 10, STANDARD_BUTTON_HEIGHT*2, true);
+        menu.addSlider("k", 1, MAX_K, STANDARD_BUTTON_HEIGHT*2, true);
+        menu.addValueLabel(StringsResources.bestK(), "-", STANDARD_BUTTON_HEIGHT);
+        menu.addChart(StringsResources.leaveOneOutAccuracy(), STANDARD_BUTTON_HEIGHT*3);
+        menu.addSlider(StringsResources.accuracy(), 1, GridNeighbours.MAX_ACCURACY, STANDARD_BUTTON_HEIGHT*2, true);
+        menu.addValueLabel(StringsResources.recall(), "-", STANDARD_BUTTON_HEIGHT);
+        menu.addButtons(new String[]{StringsResources.changeMetric()}, STANDARD_BUTTON_HEIGHT);
+        menu.addValueLabel(StringsResources.metric(), Metric.EUCLIDEAN.name(), STANDARD_BUTTON_HEIGHT);
+        menu.addSlider("p", 1, 5, STANDARD_BUTTON_HEIGHT*2, false);
+        menu.addSlider(StringsResources.weight(), 0.5, 4.5, STANDARD_BUTTON_HEIGHT*2, false);
     }
 
     /**
-     * draws coordinate system lines, samples, and KNNInterfaces
-     * at the end menu and message window are drawn
+     * Asks for decision regions of the current view (they are computed only if something has changed)
+     * and draws the simulation. Regions are always exact (in the current metric). They are not requested
+     * while a training sample is dragged, they are computed again after the engine is built on release.
+     * New results of the cross-validation are shown in the menu.
      */
     @Override
     public void draw() {
-        drawLines();
+        if(validation.version() != shownValidation) {
+            shownValidation = validation.version();
+            showValidation();
+        }
+        if(regionsVisibility && exactEngine != null && exactEngine.size() > 0 && !engine.hasMoved() && atLeastOneTrainingSample()) {
+            regions.request(this, exactEngine, (int) menu.readValueFromSlider("k"), mode(), valueRange);
+        }
+        super.draw();
+    }
+
+    /**
+     * Shows the accuracy of every k and the best k (the accuracy of samples checked so far, "..." means
+     * that the cross-validation still runs).
+     */
+    private void showValidation() {
+        CrossValidation.Result result = validation.result();
+        if(result == null) {
+            menu.updateLabel(StringsResources.bestK(), "-");
+            menu.updateChart(StringsResources.leaveOneOutAccuracy(), new double[0]);
+        } else {
+            int best = result.bestK();
+            menu.updateLabel(StringsResources.bestK(), best + " (" + MathUtils.round(result.accuracy[best - 1]*100, 1) + "%)"
+                    + (result.checked < result.total ? " ..." : ""));
+            menu.updateChart(StringsResources.leaveOneOutAccuracy(), result.accuracy);
+        }
+        invalidateInterface();
+    }
+
+    /**
+     * draws decision regions under the grid
+     */
+    @Override
+    void drawBackground() {
+        if(regionsVisibility && atLeastOneTrainingSample()) {
+            regions.draw(this);
+        }
+        super.drawBackground();
+    }
+
+    /**
+     * Background depends also on the visibility of regions and on their last finished level of detail.
+     * @return state of the background
+     */
+    @Override
+    long backgroundState() {
+        return Layer.combine(super.backgroundState(), regionsVisibility ? regions.version() : -1);
+    }
+
+    /**
+     * draws KNNInterfaces and samples
+     */
+    @Override
+    void drawData() {
         drawKNNInterface();
 
         drawSamples();
-
-        drawInterface();
     }
 
     /**
@@ -88,13 +191,30 @@ public class KNNCoordinateSystem extends CoordinateSystem {
     @Override
     public void onMouseMoved(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
         super.onMouseMoved(mouseX, mouseY, prevMouseX, prevMouseY);
-        for(KNNInterface inter: interfaces) {
-            inter.onMouseMoved(mouseX, mouseY, this);
+
+        // only interfaces of samples under the mouse and previously active ones can change
+        boolean changed = false;
+        for(KNNInterface inter: activeInterfaces) {
+            changed |= inter.onMouseMoved(mouseX, mouseY, this);
+        }
+        activeInterfaces.clear();
+        for(Sample sample: menu.getSampleIndex().samplesAt(simulationX(mouseX), simulationY(mouseY))) {
+            KNNInterface inter = interfaceOfSample.get(sample);
+            if(inter != null) {
+                changed |= inter.onMouseMoved(mouseX, mouseY, this);
+                activeInterfaces.add(inter);
+            }
+        }
+
+        if(changed) {
+            invalidateData();
         }
     }
 
     /**
-     * Performs onMouseDragged from CoordinateSystem. If it returns true then update the simulation.
+     * Performs onMouseDragged from CoordinateSystem. If it returns true then updates the simulation:
+     * when a sample is dragged only neutral samples which can be affected by its move are classified again,
+     * otherwise (e.g. the slider of k has changed) the whole simulation is updated.
      * @param mouseX - current mouse x position (in pixels)
      * @param mouseY - current mouse y position (in pixels)
      * @param prevMouseX - mouse x position in previous frame (in pixels)
@@ -103,12 +223,84 @@ public class KNNCoordinateSystem extends CoordinateSystem {
      */
     @Override
     public boolean onMouseDragged(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
+        double oldX = movingSample != null ? movingSample.getX() : 0;
+        double oldY = movingSample != null ? movingSample.getY() : 0;
+
         if(super.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY)) {
-            update();
+            if(movingSample != null && movingSample.isMoving()) {
+                long start = FrameProfiler.start();
+                updateMovedSample(oldX, oldY);
+                FrameProfiler.record(FrameProfiler.Phase.UPDATE, start);
+            } else {
+                update();
+            }
         }
         return true;
     }
 
+    /**
+     * Builds the tree (and the grid) again after a training sample was dragged.
+     * @param mouseX - current mouse x position (in pixels)
+     * @param mouseY - current mouse y position (in pixels)
+     */
+    @Override
+    public void onLeftMouseButtonReleased(double mouseX, double mouseY) {
+        super.onLeftMouseButtonReleased(mouseX, mouseY);
+
+        if(engine != null && engine.hasMoved()) {
+            engine.clearMoved();
+            // the fingerprint of moved training set is different so the tree is built again
+            update();
+        }
+    }
+
+    /**
+     * Classifies again only neutral samples which can change after the move of {@code movingSample}.
+     * Moved neutral sample changes only itself. Moved training sample can change only the neutral samples
+     * whose rings contain its old or its new position (found by the grid of rings). Engine is not built again during dragging,
+     * it uses the current position of the dragged training sample instead of the one from the time of building.
+     * In the approximate mode it's also approximate (neutral samples outside rings are not checked).
+     * @param oldX - x coordinate of the sample before the move
+     * @param oldY - y coordinate of the sample before the move
+     */
+    private void updateMovedSample(double oldX, double oldY) {
+        if(engine == null || engine.size() == 0) {
+            update();
+            return;
+        }
+
+        affected.clear();
+        if(movingSample.category() == 0) {
+            affected.add(movingSample);
+        } else {
+            if(!engine.hasMoved() && !engine.setMoved(movingSample)) {
+                // the engine is older than the sample
+                update();
+                return;
+            }
+            // the training set is changing, the validation and the regions start again on release
+            // (their jobs read the engine, so they can't run while the moved sample changes)
+            validation.cancel();
+            regions.cancel();
+            rings.samplesReaching(oldX, oldY, movingSample.getX(), movingSample.getY(), affected);
+        }
+
+        int k = (int) menu.readValueFromSlider("k");
+        if(buffers.categories.length < k) buffers = new MathUtils.KNNBuffers(k);
+        for(int i = 0; i < affected.size(); i++) {
+            Sample neutral = affected.get(i);
+            KNNInterface inter = interfaceOfSample.get(neutral);
+            if(inter == null) continue;
+
+            // the interface is changed in place, so nothing is allocated while dragging
+            MathUtils.KNNClassify(neutral, engine, k, mode(), valueRange, buffers, inter);
+            if(inter.isActive()) {
+                inter.onMouseMoved(panel.prevMouseX, panel.prevMouseY, this);
+                if(!inter.isActive()) activeInterfaces.remove(inter);
+            }
+        }
+    }
+
     /**
      * checks if some of buttons in menu is pressed
      * if so then performs some action related to that pressed button.
@@ -121,6 +313,23 @@ public class KNNCoordinateSystem extends CoordinateSystem {
             distancesVisibility = !distancesVisibility;
         } else if(label.equals(StringsResources.rings())) {
             ringsVisibility = !ringsVisibility;
+        } else if(label.equals(StringsResources.regions())) {
+            regionsVisibility = !regionsVisibility;
+            if(!regionsVisibility) regions.cancel();
+        } else if(label.equals(StringsResources.approximate())) {
+            approximate = !approximate;
+            if(!approximate) menu.updateLabel(StringsResources.recall(), "-");
+            update();
+        } else if(label.equals(StringsResources.regression())) {
+            regression = !regression;
+            update();
+        } else if(label.equals(StringsResources.weightedByDistance())) {
+            weightedByDistance = !weightedByDistance;
+            update();
+        } else if(label.equals(StringsResources.changeMetric())) {
+            Metric.Kind[] kinds = Metric.Kind.values();
+            metricKind = kinds[(metricKind.ordinal() + 1) % kinds.length];
+            update();
         } else {
             super.menuOptions(label);
         }
@@ -167,16 +376,121 @@ public class KNNCoordinateSystem extends CoordinateSystem {
     }
 
     /**
-     * Updates the simulation.
+     * Updates the simulation. The KD-tree of training samples (and the grid) is reused if they haven't changed.
+     * Interfaces of samples which are still neutral are set again in place, new neutral samples get unused interfaces.
+     * Metrics other than the euclidean one use the vantage-point tree, built again when the metric changes.
+     * Leave-one-out cross-validation of training samples is started in the background when the training set
+     * or the metric changes. Without training samples engines and interfaces are dropped and neutral samples become gray.
+     * In the regression mode neutral samples get colors of their predicted values (from blue for the smallest value
+     * of training samples to red for the largest one).
+     * In the approximate mode (only euclidean) neutral samples are classified with the grid and the recall of the grid
+     * (compared to the exact tree) is shown in the menu.
      */
     @Override
-    public void update() {
-        if(atLeastOneTrainingSample()) {
-            interfaces = MathUtils.KNNAlgorithm(samples, (int) menu.readValueFromSlider("k"));
+    void updateSimulation() {
+        if(!atLeastOneTrainingSample()) {
+            // nothing predicts neutral samples anymore, so nothing of the old training set can be used
+            validation.cancel();
+            regions.cancel();
+            engine = exactEngine = null;
+            valueRange = null;
+            tree = null;
+            grid = null;
+            vpTree = null;
+            rings.clear();
+            unusedInterfaces.addAll(interfaces);
+            interfaces.clear();
+            interfaceOfSample.clear();
+            activeInterfaces.clear();
+            for(Sample sample: samples) {
+                sample.setPredictedColor(DrawUtils.gray);
+            }
+        } else {
+            training.clear();
+            neutrals.clear();
+            MathUtils.splitSamples(samples, training, neutrals);
+            valueRange = new MathUtils.ValueRange(training);
+            if(tree == null || !tree.isBuiltFrom(training)) {
+                tree = new KDTree(training);
+                grid = null;
+                vpTree = null;
+            }
+            int k = (int) menu.readValueFromSlider("k");
+
+            Metric metric = currentMetric();
+            menu.updateLabel(StringsResources.metric(), metric.name());
+            engine = exactEngine = tree;
+            if(metric.kind != Metric.Kind.EUCLIDEAN) {
+                if(vpTree == null || !vpTree.metric().equals(metric)) vpTree = new VPTree(training, metric);
+                engine = exactEngine = vpTree;
+                if(approximate) menu.updateLabel(StringsResources.recall(), "-");
+            } else if(approximate) {
+                if(grid == null) grid = new GridNeighbours(training);
+                grid.setAccuracy((int) menu.readValueFromSlider(StringsResources.accuracy()));
+                engine = grid;
 
+                double recall = MathUtils.KNNRecall(tree, grid, neutrals, k, RECALL_QUERIES);
+                menu.updateLabel(StringsResources.recall(), MathUtils.round(recall*100, 1) + "%");
+            }
+
+            if(!engine.hasMoved()) validation.request(this, exactEngine, MAX_K);
+
+            assignInterfaces();
+            // interfaces are set by many threads, they can't report changes to the grid of rings meanwhile
+            rings.clear();
+            MathUtils.KNNAlgorithm(neutrals, engine, k, mode(), valueRange, interfaces);
+            rings.build(interfaces);
+
+            activeInterfaces.clear();
             for(KNNInterface inter: interfaces) {
                 inter.onMouseMoved(panel.prevMouseX, panel.prevMouseY, this);
+                if(inter.isActive()) activeInterfaces.add(inter);
             }
         }
     }
+
+    /**
+     * @return classification or regression (weighted or not) chosen in the side menu
+     */
+    private MathUtils.KNNMode mode() {
+        if(!regression) return MathUtils.KNNMode.CLASSIFICATION;
+        return weightedByDistance ? MathUtils.KNNMode.WEIGHTED_REGRESSION : MathUtils.KNNMode.REGRESSION;
+    }
+
+    /**
+     * @return metric chosen in the side menu (with the exponent and the weight from sliders)
+     */
+    private Metric currentMetric() {
+        if(metricKind == Metric.Kind.EUCLIDEAN) return Metric.EUCLIDEAN;
+        return new Metric(metricKind, menu.readValueFromSlider("p"), 1, menu.readValueFromSlider(StringsResources.weight()));
+    }
+
+    /**
+     * Makes the list of interfaces for current neutral samples (in their order). Samples which were neutral
+     * keep their interfaces, interfaces of samples which are not neutral anymore (or were removed) become unused.
+     */
+    private void assignInterfaces() {
+        updateNumber++;
+        nextInterfaces.clear();
+        for(Sample neutral: neutrals) {
+            KNNInterface inter = interfaceOfSample.get(neutral);
+            if(inter == null) {
+                inter = unusedInterfaces.isEmpty() ? new KNNInterface() : unusedInterfaces.pop();
+                interfaceOfSample.put(neutral, inter);
+            }
+            inter.updateNumber = updateNumber;
+            nextInterfaces.add(inter);
+        }
+
+        for(KNNInterface inter: interfaces) {
+            if(inter.updateNumber != updateNumber) {
+                interfaceOfSample.remove(inter.predicted);
+                unusedInterfaces.push(inter);
+            }
+        }
+
+        ArrayList<KNNInterface> previous = interfaces;
+        interfaces = nextInterfaces;
+        nextInterfaces = previous;
+    }
 }
@@ -1,33 +1,107 @@
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 /**
  * Graphical interface that is related to one neutral sample.
  * It draws distances between that sample and its neighbours and ring whose
  * center is that neutral sample and radius equals to the biggest distance between it and
- * some sample from neighbours list
+ * some sample from neighbours list. Ring has the shape of the unit ball of the metric (e.g. a diamond for Manhattan).
+ * Interfaces are reused: {@code set} changes the interface in place and reuses its stretches and ring,
+ * so updating KNN doesn't create new objects.
  */
 public class KNNInterface {
     // sample that is the center of the ring and all distances starts from it
     Sample predicted;
+    // only the first {@code used} stretches belong to current neighbours, the rest waits for reuse
     ArrayList<Stretch> distances = new ArrayList<>();
+    private int used;
     Ring ring;
     // if mouse is above the predicted sample then ring and distances are drawn otherwise
     // these options have to be selected in the side menu
     boolean active;
 
-    KNNInterface(Sample predicted, List<Sample> closest) {
+    // distance to the farthest neighbour in the metric of neighbours,
+    // moves of training samples outside it don't change this interface
+    double radius;
+    Metric metric;
+    // color of the predicted class, set to the sample by the thread which owns samples
+    Color predictedColor;
+    // number of the last update of the simulation which used this interface
+    int updateNumber;
+    // grid of rings which is informed about changes of this interface or null
+    private RingIndex index;
+
+    /**
+     * Creates an empty interface, {@code set} has to be called before drawing it.
+     */
+    KNNInterface() {
+        active = false;
+    }
+
+    /**
+     * @param predicted - neutral sample
+     * @param closest - its neighbours sorted from the closest to the farthest (the list isn't kept)
+     * @param radius - distance between the neutral sample and the farthest neighbour
+     * @param metric - metric in which neighbours were found
+     * @param predictedColor - color of the predicted class of the neutral sample
+     */
+    KNNInterface(Sample predicted, List<Sample> closest, double radius, Metric metric, Color predictedColor) {
+        set(predicted, closest, radius, metric, predictedColor);
+    }
+
+    /**
+     * Changes the interface in place. Stretches and the ring are reused, new ones are created
+     * only if there are more neighbours than ever before.
+     * @param predicted - neutral sample
+     * @param closest - its neighbours sorted from the closest to the farthest (the list isn't kept)
+     * @param radius - distance between the neutral sample and the farthest neighbour
+     * @param metric - metric in which neighbours were found
+     * @param predictedColor - color of the predicted class of the neutral sample
+     */
+    void set(Sample predicted, List<Sample> closest, double radius, Metric metric, Color predictedColor) {
+        if(this.predicted != predicted) {
+            active = false;
+        }
         this.predicted = predicted;
+        this.radius = radius;
+        this.metric = metric;
+        this.predictedColor = predictedColor;
 
-        for(Sample neighbour: closest) {
-            distances.add(new Stretch(this.predicted, neighbour, neighbour.getColor()));
+        used = closest.size();
+        for(int i = 0; i < used; i++) {
+            Sample neighbour = closest.get(i);
+            if(i < distances.size()) {
+                distances.get(i).set(predicted, neighbour, neighbour.getColor());
+            } else {
+                distances.add(new Stretch(predicted, neighbour, neighbour.getColor()));
+            }
+        }
+        if(ring == null) {
+            ring = new Ring(predicted, radius, metric, predictedColor);
+        } else {
+            ring.set(predicted, radius, metric, predictedColor);
         }
-        Sample last = closest.get(closest.size()-1);
-        ring = new Ring(predicted, MathUtils.dist(predicted, last), predicted.getPredictedColor());
+        if(index != null) index.changed(this);
+    }
 
-        active = false;
+    void setIndex(RingIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return half of the width of the bounding box of the ring (the unit ball of every metric touches
+     * its box at the points on axes, so it's the radius divided by the length of the unit vector)
+     */
+    double halfWidth() {
+        return radius / metric.distance(1, 0);
+    }
+
+    /**
+     * @return half of the height of the bounding box of the ring
+     */
+    double halfHeight() {
+        return radius / metric.distance(0, 1);
     }
 
     /**
@@ -40,8 +114,8 @@ public class KNNInterface {
     void drawDistances(CoordinateSystem plane, boolean drawAll) {
         if(!(active || drawAll || predicted.isMoving())) return;
 
-        for(Stretch stretch: distances) {
-            stretch.draw(plane);
+        for(int i = 0; i < used; i++) {
+            distances.get(i).draw(plane);
         }
     }
 
@@ -53,44 +127,34 @@ public class KNNInterface {
      * @param drawAll - option from side menu that allows drawing all distances from all neutral samples
      */
     void drawRing(CoordinateSystem plane, boolean drawAll) {
-        if(!(active || drawAll || predicted.isMoving())) return;
+        if(!(active || drawAll || predicted.isMoving()) || used == 0) return;
 
         ring.draw(plane);
     }
 
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * @param x - x coordinate in cartesian plane
+     * @param y - y coordinate in cartesian plane
+     * @return true if the point is inside the ring (also on its edge) in the metric of the ring
+     */
+    boolean reaches(double x, double y) {
+        return metric.distance(x - predicted.getX(), y - predicted.getY()) <= radius;
+    }
+
     /**
      * Checks whether the mouse is above the neutral sample and changes the active value
      * @param mouseX - current x coordinate of the mouse (in pixels)
      * @param mouseY - current y coordinate of the mouse (in pixels)
      * @param plane - current working Coordinate system
+     * @return true if the active value has changed
      */
-    void onMouseMoved(double mouseX, double mouseY, CoordinateSystem plane) {
+    boolean onMouseMoved(double mouseX, double mouseY, CoordinateSystem plane) {
+        boolean wasActive = active;
         active = predicted.hasInside(plane.simulationX(mouseX), plane.simulationY(mouseY));
+        return wasActive != active;
     }
 }
-
-/**
- * Class that is used in KNN algorithm when training samples are sorted.
- */
-class DistComparator implements Comparator<Sample> {
-    private final Sample neutral;
-
-    DistComparator(Sample neutral) {
-        this.neutral = neutral;
-    }
-
-    /**
-     * Compare two training samples which one is closest to the neutral sample.
-     * @param sample1 - first training sample
-     * @param sample2 - second training sample
-     * @return 1 if second sample if closer or -1 of first is closer
-     */
-    @Override
-    public int compare(Sample sample1, Sample sample2) {
-        if(MathUtils.dist(sample1, neutral) > MathUtils.dist(sample2, neutral)){
-            return 1;
-        } else {
-            return -1;
-        }
-    }
-}
\ No newline at end of file
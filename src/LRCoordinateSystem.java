@@ -40,21 +40,15 @@ public class LRCoordinateSystem extends CoordinateSystem {
     }
 
     /**
-     * draws coordinate system lines, samples,
-     * and, if there are at least two samples, best straight line
-     * at the end menu and message window are drawn
+     * draws samples and, if there are at least two samples, best straight line
      */
     @Override
-    public void draw() {
-        drawLines();
-
+    void drawData() {
         drawSamples();
 
         if(samples.size() > 1) {
             drawRegressionLine();
         }
-
-        drawInterface();
     }
 
     /**
@@ -111,7 +105,7 @@ public class LRCoordinateSystem extends CoordinateSystem {
     void drawRegressionLine() {
         if(regressionLineVisibility){
             DrawUtils.g2.setColor(DrawUtils.green);
-            DrawUtils.g2.setStroke(new BasicStroke(3));
+            DrawUtils.g2.setStroke(DrawUtils.stroke(3));
             drawStraightLine(a, b);
         }
 
@@ -127,6 +121,10 @@ public class LRCoordinateSystem extends CoordinateSystem {
     void drawErrors() {
         DrawUtils.g2.setColor(DrawUtils.transparentRed);
         for(Sample sample: samples) {
+            // square lies between the sample and the line, on the right side of the sample if the sample is below the line
+            double side = a*sample.getX() + b - sample.getY();
+            if(!isVisible(sample.getX() + side/2, sample.getY() + side/2, abs(side)/2)) continue;
+
             int difference =  (int)((a*sample.getX() + b - sample.getY())*scale);
 
             if(difference > 0) {
@@ -139,19 +137,17 @@ public class LRCoordinateSystem extends CoordinateSystem {
 
     /**
      * Updates the simulation. Finds new best straight line, calculates new error and updates labels in the menu.
+     * Both come from moments of samples, so moving a sample doesn't visit the other ones.
      */
     @Override
-    public void update() {
-        double[] coefficients = MathUtils.fitLinearRegressionModel(samples);
+    void updateSimulation() {
+        double[] coefficients = MathUtils.fitLinearRegressionModel(moments);
         a = coefficients[0];
         b = coefficients[1];
 
         menu.updateLabel("y", MathUtils.round(a, 2)+"x " + (b > 0 ? "+ " : "- ") + MathUtils.round(abs(b), 2));
 
-        double error = 0;
-        for(Sample sample: samples) {
-            error += (sample.getY() - a*sample.getX()-b) * (sample.getY() - a*sample.getX()-b);
-        }
+        double error = MathUtils.squaredError(moments, a, b);
         menu.updateLabel(StringsResources.error(), Double.toString(MathUtils.round(error, 2)));
     }
 }
@@ -42,6 +42,7 @@ public class LRTutorialCoordinateSystem extends LRCoordinateSystem {
      * then draws standard linear regression simulation (with menu and message box)
      * on the very top draws some arrows.
      * if autoMotion is running it also moves camera and changes scale.
+     * Blinking areas and arrows are animated so as long as there are some of them the next frame is requested.
      */
     @Override
     public void draw() {
@@ -50,6 +51,10 @@ public class LRTutorialCoordinateSystem extends LRCoordinateSystem {
         for(Shape a: arrows) a.draw(this);
 
         autoMotion.proceed();
+
+        if(!areasShapes.isEmpty() || !arrows.isEmpty()) {
+            requestRedraw();
+        }
     }
 
     /**
@@ -69,11 +74,12 @@ public class LRTutorialCoordinateSystem extends LRCoordinateSystem {
 
     /**
      * removes sample if it is right moment and sample to be removed.
-     * @param index - index of sample that has to be deleted.
+     * @param sample - sample that has to be deleted.
      */
-    void removeSample(int index) {
-        if(isValidMouseAction(0, 0, "remove", index)) {
-            super.removeSample(index);
+    void removeSample(Sample sample) {
+        // the tutorial has only a few samples and its steps depend on their order
+        if(isValidMouseAction(0, 0, "remove", samples.indexOf(sample))) {
+            super.removeSample(sample);
             if(state == 6) {
                 changeState();
             } else if(state == 9 && samples.size() == 0) {
@@ -98,6 +104,7 @@ public class LRTutorialCoordinateSystem extends LRCoordinateSystem {
             if (sample.isMoving()) {
                 if(isValidMouseAction(0, 0, "sample move", i)) {
                     sample.instantMove(simulationX(mouseX), simulationY(mouseY));
+                    invalidateData();
                 }
                 return true;
             }
@@ -201,6 +208,7 @@ public class LRTutorialCoordinateSystem extends LRCoordinateSystem {
         state += 1;
         areasShapes.clear();
         arrows.clear();
+        invalidateData();
 
         addInterface();
 
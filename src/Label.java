@@ -18,7 +18,7 @@ public class Label {
 
     void draw() {
         DrawUtils.g2.setColor(DrawUtils.primaryColor);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         DrawUtils.drawCenteredString(text, cenX, cenY);
     }
 }
@@ -0,0 +1,66 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Transparent image that caches one part of the frame (e.g. grid and axes of the coordinate system).
+ * The layer is drawn again only if it was invalidated or if the state passed to {@code draw}
+ * is different than the state of the cached image. Otherwise drawing the layer is just one copy of the image.
+ */
+class Layer {
+    private BufferedImage image;
+    private Graphics2D graphics;
+    // state of the simulation when the image was drawn
+    private long state;
+    private boolean valid = false;
+
+    /**
+     * Copies the layer onto the current graphics engine of DrawUtils.
+     * If it's necessary, first clears the image and draws the layer again using the painter.
+     * While the painter runs, DrawUtils draws on the image of this layer.
+     * @param width - width of the layer (width of the screen)
+     * @param height - height of the layer (height of the screen)
+     * @param currentState - value that describes everything on what the layer depends (see {@code combine})
+     * @param painter - function that draws the layer
+     */
+    void draw(int width, int height, long currentState, Runnable painter) {
+        if(image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            graphics = DrawUtils.prepareGraphics(image);
+            valid = false;
+        }
+
+        if(!valid || state != currentState) {
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setComposite(AlphaComposite.SrcOver);
+
+            Graphics2D screen = DrawUtils.g2;
+            DrawUtils.setGraphicsContext(graphics);
+            painter.run();
+            DrawUtils.setGraphicsContext(screen);
+
+            state = currentState;
+            valid = true;
+        }
+
+        DrawUtils.g2.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Forces drawing the layer again in the next frame.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Adds a value to the state of the layer. States are compared only with previous states
+     * of the same layer so a simple hash is enough.
+     * @param state - current state
+     * @param value - value on which the layer depends
+     * @return new state
+     */
+    static long combine(long state, double value) {
+        return state*31 + Double.doubleToLongBits(value);
+    }
+}
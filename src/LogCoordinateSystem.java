@@ -7,6 +7,8 @@ import static java.lang.StrictMath.abs;
  * For the algorithms look at MathUtils class.
  */
 public class LogCoordinateSystem extends CoordinateSystem {
+    // the right end of the batch size slider means the full batch
+    private static final int MAX_BATCH_SLIDER = 256;
     // a and b are coefficient of separation line
     private double a;
     private double b;
@@ -18,6 +20,10 @@ public class LogCoordinateSystem extends CoordinateSystem {
     // important to keep track if changes occurred
     private int epochs = 0;
     private double eta = 0.0;
+    private int batchSize = 1;
+    private final LogisticTrainer trainer = new LogisticTrainer();
+    // probabilities of the class 1 for samples in the store, reused by predict
+    private double[] predictions = new double[0];
 
     LogCoordinateSystem(int width, int height, Panel mainPanel) {
         super(width, height, mainPanel);
@@ -45,36 +51,33 @@ public class LogCoordinateSystem extends CoordinateSystem {
         menu.addCheckBoxButtons(buttonsLabels, buttonsValues, STANDARD_BUTTON_HEIGHT);
         menu.addSlider(StringsResources.eta(), 0.001, 1.2, 1.1*STANDARD_BUTTON_HEIGHT, false);
         menu.addSlider(StringsResources.epochs(), 1, 200, 1.1*STANDARD_BUTTON_HEIGHT, true);
+        menu.addSlider(StringsResources.batchSize(), 1, MAX_BATCH_SLIDER, 1, 1.1*STANDARD_BUTTON_HEIGHT, true);
 
         menu.addValueLabel("w", "[0, 0]", STANDARD_BUTTON_HEIGHT);
         menu.addValueLabel(StringsResources.bias(), "0", STANDARD_BUTTON_HEIGHT);
         menu.addValueLabel("y", "0x + 0", STANDARD_BUTTON_HEIGHT);
+        menu.addValueLabel(StringsResources.loss(), "-", STANDARD_BUTTON_HEIGHT);
     }
 
     /**
-     * draws coordinate system lines, all samples and if there are
+     * draws all samples and if there are
      * at least 2 samples and one of them is red and the other is blue
      * and if line visibility is set to true then draws separation line
      * also if weight visibility is set to true then weight vector is drawn.
-     * at the end menu and message window are drawn.
      */
     @Override
-    public void draw() {
-        drawLines();
-
+    void drawData() {
         drawSamples();
 
         if(samples.size() > 1 && twoClassesExists()) {
             if(separationLineVisibility) drawSeparationLine();
 
             if(weightsVisibility) {
-                DrawUtils.g2.setStroke(new BasicStroke(2));
+                DrawUtils.g2.setStroke(DrawUtils.stroke(2));
                 DrawUtils.g2.setColor(DrawUtils.lightGreen);
                 drawVector(wx, wy);
             }
         }
-
-        drawInterface();
     }
 
     /**
@@ -117,7 +120,7 @@ public class LogCoordinateSystem extends CoordinateSystem {
         if(super.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY) && samples.size() > 1) {
             // hyperparameters are different - have to update
             if((int)menu.readValueFromSlider(StringsResources.epochs()) != epochs ||
-                    menu.readValueFromSlider(StringsResources.eta()) != eta) {
+                    menu.readValueFromSlider(StringsResources.eta()) != eta || readBatchSize() != batchSize) {
                 update();
                 return true;
             }
@@ -127,6 +130,7 @@ public class LogCoordinateSystem extends CoordinateSystem {
                     if(s.category() != 0) {
                         update();
                     } else {
+                        syncStore();
                         predict();
                     }
                     return true;
@@ -170,12 +174,12 @@ public class LogCoordinateSystem extends CoordinateSystem {
 
     /**
      * Updates the whole simulation under the condition that at least one sample is red and one is blue.
-     * Finds best weights for current samples using method {@code MathUtils.LogisticRegressionParameters}
+     * Finds best weights for current samples using {@code LogisticTrainer} with the batch size from the slider
      * Saves weights and bias, updates labels and finds the coefficients of separation line.
      * At the end predicts class for all neutral samples.
      */
     @Override
-    public void update() {
+    void updateSimulation() {
         if(!twoClassesExists()) {
             return;
         }
@@ -183,7 +187,11 @@ public class LogCoordinateSystem extends CoordinateSystem {
         epochs = (int)menu.readValueFromSlider(StringsResources.epochs());
         eta = menu.readValueFromSlider(StringsResources.eta());
 
-        double[] neuron = MathUtils.fitLogisticRegressionModel(samples, epochs, eta);
+        batchSize = readBatchSize();
+
+        syncStore();
+        trainer.setBatchSize(batchSize);
+        double[] neuron = trainer.train(store, epochs, eta);
 
         wx = neuron[0];
         wy = neuron[1];
@@ -195,19 +203,33 @@ public class LogCoordinateSystem extends CoordinateSystem {
         menu.updateLabel("w", "["+MathUtils.round(wx, 2)+", "+MathUtils.round(wy, 2)+"]");
         menu.updateLabel(StringsResources.bias(), Double.toString(MathUtils.round(bias, 2)));
         menu.updateLabel("y", MathUtils.round(a, 2)+"x " + (b > 0 ? "+ " : "- ") + MathUtils.round(abs(b), 2));
+        // number of epochs is shown, because training stops earlier when the loss doesn't change
+        menu.updateLabel(StringsResources.loss(), MathUtils.round(trainer.loss(), 4) + " (" + trainer.epochsDone() + ")");
 
         // predictions
         predict();
     }
 
+    /**
+     * @return batch size chosen by the slider ({@code LogisticTrainer.FULL_BATCH} at the right end)
+     */
+    int readBatchSize() {
+        int size = (int)menu.readValueFromSlider(StringsResources.batchSize());
+        return size >= MAX_BATCH_SLIDER ? LogisticTrainer.FULL_BATCH : size;
+    }
+
     /**
      *  Predicts class of all neutral samples
-     *  Used at the end of update method and when neutral sample was moved
+     *  Used at the end of update method and when neutral sample was moved (the store has to be synced before)
      */
     void predict() {
-        for(Sample sample: samples) {
+        if(predictions.length < store.size()) predictions = new double[Math.max(store.size(), predictions.length*2)];
+        MathKernels.logisticPredictions(store.xs(), store.ys(), store.size(), wx, wy, bias, predictions);
+
+        for(int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
             if(sample.category() == 0) {
-                int predictedCategory = MathUtils.sigmoid(wx*sample.getX() + wy*sample.getY() + bias) > 0.5 ? 1:0;
+                int predictedCategory = predictions[i] > 0.5 ? 1:0;
                 sample.setPredictedColor(predictedCategory == 1 ? DrawUtils.lightRed : DrawUtils.lightBlue);
             }
         }
@@ -236,7 +258,7 @@ public class LogCoordinateSystem extends CoordinateSystem {
      */
     void drawSeparationLine() {
         DrawUtils.g2.setColor(DrawUtils.yellow);
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         drawStraightLine(a, b);
     }
 }
@@ -49,6 +49,7 @@ public class LogTutorialCoordinateSystem extends LogCoordinateSystem {
      * then draws standard logistic regression simulation (with menu and message box)
      * on the very top draws some arrows.
      * if autoMotion is running it also moves camera and changes scale.
+     * Blinking areas and arrows are animated so as long as there are some of them the next frame is requested.
      */
     @Override
     public void draw() {
@@ -57,6 +58,10 @@ public class LogTutorialCoordinateSystem extends LogCoordinateSystem {
         for(Shape a: arrows) a.draw(this);
 
         autoMotion.proceed();
+
+        if(!areasShapes.isEmpty() || !arrows.isEmpty()) {
+            requestRedraw();
+        }
     }
 
 
@@ -93,9 +98,9 @@ public class LogTutorialCoordinateSystem extends LogCoordinateSystem {
 
     /**
      * There is no removes in this part of the tutorial
-     * @param index - index of sample that has to be deleted (not used)
+     * @param sample - sample that has to be deleted (not used)
      */
-    void removeSample(int index) {
+    void removeSample(Sample sample) {
 
     }
 
@@ -112,6 +117,7 @@ public class LogTutorialCoordinateSystem extends LogCoordinateSystem {
             if (sample.isMoving()) {
                 if(isValidMouseAction(0, 0, "sample move", i)) {
                     sample.instantMove(simulationX(mouseX), simulationY(mouseY));
+                    invalidateData();
                 }
                 return true;
             }
@@ -193,6 +199,7 @@ public class LogTutorialCoordinateSystem extends LogCoordinateSystem {
         state += 1;
         areasShapes.clear();
         arrows.clear();
+        invalidateData();
 
         addInterface();
 
@@ -0,0 +1,189 @@
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Gradient descent of the logistic regression neuron with configurable size of the batch:
+ * 1 is stochastic gradient descent (like the original per-sample training), bigger batches are mini-batches
+ * and a batch with all samples is the full batch. Loss is the mean squared error of the sigmoid output
+ * and the weights are moved by eta times the mean gradient of the batch.
+ * Red and blue samples are copied to primitive arrays and zero centered there (samples don't move),
+ * the order of samples is shuffled by a permutation of indices. Predictions of a batch are computed by
+ * {@code MathKernels.logisticPredictions} and gradients by multiply-add reductions of {@code MathKernels}.
+ * Training stops earlier when the loss of an epoch changes relatively less than {@code tolerance}.
+ * Buffers are reused, so training the same samples again doesn't allocate memory.
+ */
+class LogisticTrainer {
+    // batch size which means that all samples are in one batch
+    static final int FULL_BATCH = Integer.MAX_VALUE;
+    static final double DEFAULT_TOLERANCE = 1e-6;
+
+    private int batchSize = 1;
+    private double tolerance = DEFAULT_TOLERANCE;
+
+    // centered coordinates and targets (class - 1, so 0 - red, 1 - blue) of training samples
+    private double[] xs = new double[0], ys = new double[0], targets = new double[0];
+    private int[] order = new int[0];
+    // coordinates, classes, predictions and errors of the current batch
+    private double[] batchXs = new double[0], batchYs = new double[0], batchTargets = new double[0];
+    private double[] outputs = new double[0], errors = new double[0];
+
+    private int epochsDone;
+    private double loss;
+
+    /**
+     * @param batchSize - number of samples in one step of gradient descent (at least 1, {@code FULL_BATCH} for all)
+     */
+    void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @param tolerance - relative change of the loss between epochs below which training stops (0 turns it off)
+     */
+    void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Fits the model of logistic regression to red (class 1) and blue (class 2) samples.
+     * The output of the neuron is the probability of the class 2.
+     * @param store - all samples
+     * @param epochs - maximal number of passes through all samples
+     * @param eta - step size of updating the weights
+     * @return table [wx, wy, bias]
+     */
+    double[] train(SampleStore store, int epochs, double eta) {
+        int count = copyTrainingSamples(store);
+        double meanX = center(xs, count), meanY = center(ys, count);
+        int size = Math.min(batchSize, count);
+        ensureBatchCapacity(size);
+
+        // should be random values but with constant initial values, line looks more stable
+        double wx = 0.1;
+        double wy = -0.1;
+        double bias = 0.2;
+
+        Random random = ThreadLocalRandom.current();
+        double previousLoss = Double.POSITIVE_INFINITY;
+        epochsDone = 0;
+        loss = 0;
+        while(epochsDone < epochs && count > 0) {
+            if(size < count) shuffle(random, count);
+
+            // loss of the epoch is summed from batches before their steps
+            double squaredErrors = 0;
+            for(int from = 0; from < count; from += size) {
+                int n = Math.min(size, count - from);
+                double[] x = xs, y = ys, t = targets;
+                if(size < count) {
+                    gather(from, n);
+                    x = batchXs;
+                    y = batchYs;
+                    t = batchTargets;
+                }
+
+                MathKernels.logisticPredictions(x, y, n, wx, wy, bias, outputs);
+                for(int i = 0; i < n; i++) {
+                    double difference = t[i] - outputs[i];
+                    squaredErrors += difference*difference;
+                    // derivative of the loss by the input of the sigmoid (sigmoid' = output*(1 - output))
+                    errors[i] = difference*outputs[i]*(1 - outputs[i]);
+                }
+
+                double step = eta / n;
+                wx += step*MathKernels.dot(errors, x, n);
+                wy += step*MathKernels.dot(errors, y, n);
+                bias += step*MathKernels.sum(errors, n);
+            }
+            epochsDone++;
+            loss = squaredErrors / (2*count);
+
+            if(epochsDone > 1 && Math.abs(previousLoss - loss) <= tolerance*previousLoss) break;
+            previousLoss = loss;
+        }
+        return new double[] {wx, wy, bias - (wx*meanX + wy*meanY)};
+    }
+
+    /**
+     * @return number of epochs of the last training (fewer than requested if it stopped earlier)
+     */
+    int epochsDone() {
+        return epochsDone;
+    }
+
+    /**
+     * @return mean squared error of the last epoch of the last training
+     */
+    double loss() {
+        return loss;
+    }
+
+    /**
+     * Copies red and blue samples to {@code xs}, {@code ys} and {@code targets}.
+     * @return number of copied samples
+     */
+    private int copyTrainingSamples(SampleStore store) {
+        if(xs.length < store.size()) {
+            xs = new double[store.size()];
+            ys = new double[store.size()];
+            targets = new double[store.size()];
+            order = new int[store.size()];
+        }
+
+        int count = 0;
+        for(int i = 0; i < store.size(); i++) {
+            if(store.category(i) == 1 || store.category(i) == 2) {
+                xs[count] = store.x(i);
+                ys[count] = store.y(i);
+                targets[count] = store.category(i) - 1;
+                order[count] = count;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Zero centering is only to improve efficiency of the algorithm, the copy is centered not samples.
+     * @return the mean which was subtracted
+     */
+    private static double center(double[] values, int n) {
+        if(n == 0) return 0;
+
+        double mean = MathUtils.mean(values, n);
+        for(int i = 0; i < n; i++) values[i] -= mean;
+        return mean;
+    }
+
+    private void ensureBatchCapacity(int size) {
+        if(outputs.length >= size) return;
+
+        batchXs = new double[size];
+        batchYs = new double[size];
+        batchTargets = new double[size];
+        outputs = new double[size];
+        errors = new double[size];
+    }
+
+    /**
+     * Fisher-Yates shuffle of indices of samples.
+     */
+    private void shuffle(Random random, int count) {
+        for(int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int index = order[i]; order[i] = order[j]; order[j] = index;
+        }
+    }
+
+    /**
+     * Copies samples of the batch (positions [from, from + n) of the shuffled order) next to each other.
+     */
+    private void gather(int from, int n) {
+        for(int i = 0; i < n; i++) {
+            int index = order[from + i];
+            batchXs[i] = xs[index];
+            batchYs[i] = ys[index];
+            batchTargets[i] = targets[index];
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Hot loops of algorithms on primitive arrays: squared distances from one point to many points (KNN),
+ * multiply-add reductions (dot products, gradients) and predictions of logistic regression for many points.
+ * Every kernel has two implementations:
+ * SIMD kernels of the Vector API ({@code VectorKernels} in the directory {@code vector}, built and run with
+ * {@code --add-modules jdk.incubator.vector}) and plain loops below, used when the module or the class is missing
+ * or when the CPU has no vectors of at least 2 doubles. The choice is made once, when the class is loaded.
+ * Both implementations give the same results within these tolerances:
+ * squared distances are bit-identical (the same operations in the same order for every element),
+ * predictions differ by at most {@code PREDICTION_TOLERANCE} (exp of vectors can differ from {@code Math.exp} by 1 ulp)
+ * and reductions, which add numbers in a different order, by at most
+ * {@code REDUCTION_TOLERANCE * n * sum of |terms|} (the bound of rounding errors of both orders).
+ */
+class MathKernels {
+    // relative difference of reductions of both implementations per added term (2^-52, twice the rounding unit)
+    static final double REDUCTION_TOLERANCE = 0x1p-52;
+    // absolute difference of predictions of both implementations (a few ulps of numbers up to 1)
+    static final double PREDICTION_TOLERANCE = 0x1p-50;
+
+    /**
+     * Kernels which can replace the plain loops (see {@code VectorKernels}).
+     */
+    interface Implementation {
+        /**
+         * @return number of doubles processed by one instruction
+         */
+        int lanes();
+        void squaredDistances(double[] xs, double[] ys, int from, int to, double x, double y, double[] out);
+        double dot(double[] xs, double[] ys, int n);
+        double sum(double[] values, int n);
+        void logisticPredictions(double[] xs, double[] ys, int n, double wx, double wy, double bias, double[] out);
+    }
+
+    // SIMD kernels or null if they can't be used
+    static final Implementation VECTOR = loadVectorKernels();
+
+    /**
+     * Loads {@code VectorKernels} by reflection, so this class works also when it wasn't compiled
+     * or the incubator module isn't added to the JVM.
+     * @return SIMD kernels or null if they are not available or the CPU hasn't got vectors of doubles
+     */
+    private static Implementation loadVectorKernels() {
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            Implementation kernels = (Implementation) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+            return kernels.lanes() >= 2 ? kernels : null;
+        } catch(ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes squared euclidean distances from the point (x, y) to points [from, to) of arrays.
+     * @param xs - x coordinates of points
+     * @param ys - y coordinates of points
+     * @param from - index of the first point
+     * @param to - index after the last point
+     * @param x - x coordinate of the query point
+     * @param y - y coordinate of the query point
+     * @param out - out[i - from] receives the distance to the i-th point (at least to - from long)
+     */
+    static void squaredDistances(double[] xs, double[] ys, int from, int to, double x, double y, double[] out) {
+        if(VECTOR != null) {
+            VECTOR.squaredDistances(xs, ys, from, to, x, y, out);
+            return;
+        }
+        for(int i = from; i < to; i++) {
+            double dx = xs[i] - x, dy = ys[i] - y;
+            out[i - from] = dx*dx + dy*dy;
+        }
+    }
+
+    /**
+     * @param xs - first vector
+     * @param ys - second vector
+     * @param n - length of vectors
+     * @return sum of xs[i]*ys[i] (dot product)
+     */
+    static double dot(double[] xs, double[] ys, int n) {
+        if(VECTOR != null) return VECTOR.dot(xs, ys, n);
+
+        double sum = 0;
+        for(int i = 0; i < n; i++) {
+            sum += xs[i]*ys[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param values - numbers
+     * @param n - how many numbers are used
+     * @return sum of the first n numbers
+     */
+    static double sum(double[] values, int n) {
+        if(VECTOR != null) return VECTOR.sum(values, n);
+
+        double sum = 0;
+        for(int i = 0; i < n; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Computes sigmoid(wx*x + wy*y + bias) for the first n points.
+     * @param xs - x coordinates of points
+     * @param ys - y coordinates of points
+     * @param n - number of points
+     * @param wx - weight of x
+     * @param wy - weight of y
+     * @param bias - bias of the neuron
+     * @param out - out[i] receives the probability that the i-th point is of the class 1
+     */
+    static void logisticPredictions(double[] xs, double[] ys, int n, double wx, double wy, double bias, double[] out) {
+        if(VECTOR != null) {
+            VECTOR.logisticPredictions(xs, ys, n, wx, wy, bias, out);
+            return;
+        }
+        for(int i = 0; i < n; i++) {
+            out[i] = MathUtils.sigmoid(wx*xs[i] + wy*ys[i] + bias);
+        }
+    }
+}
@@ -1,6 +1,9 @@
+import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static java.lang.Double.max;
 import static java.lang.Double.min;
@@ -14,6 +17,46 @@ import static java.lang.StrictMath.sqrt;
  * TODO In the future it should be divided into smaller classes.
  */
 public class MathUtils {
+    // number of classes of training samples which can vote in KNN
+    static final int VOTES = 6;
+    // below that number of neutral samples KNN runs in the calling thread
+    static final int PARALLEL_THRESHOLD = 1000;
+
+    /**
+     * KNN can vote for the class of the sample or predict its value as the mean value of neighbours
+     * (see {@code Sample.getValue}), the mean can be weighted by distances.
+     */
+    enum KNNMode { CLASSIFICATION, REGRESSION, WEIGHTED_REGRESSION }
+
+    /**
+     * The smallest and the largest value of training samples. Predicted values are shown in the colors
+     * of the heat map from blue (min) to red (max).
+     */
+    static class ValueRange {
+        final double min, max;
+
+        /**
+         * @param training - training samples
+         */
+        ValueRange(List<Sample> training) {
+            double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+            for(Sample sample: training) {
+                low = min(low, sample.getValue());
+                high = max(high, sample.getValue());
+            }
+            this.min = low;
+            this.max = high;
+        }
+
+        /**
+         * @param value - predicted value
+         * @return index of the color of the value in {@code DrawUtils.heatColors}
+         */
+        int heatIndex(double value) {
+            return DrawUtils.heatIndex(value, min, max);
+        }
+    }
+
     /**
      * function that check if value is in the [min, max] range. If it is then returns val.
      * If val > max then returns max and if val < min then returns min.
@@ -55,7 +98,7 @@ public class MathUtils {
      * @param values - list of numbers
      * @return - index of the biggest value in the list or -1
      */
-    static int argmax(Integer[] values) {
+    static int argmax(int[] values) {
         int max=values[0]-1, maxInd=0;
         boolean exAequo = false;
 
@@ -65,244 +108,147 @@ public class MathUtils {
                 max = values[i];
                 maxInd = i;
             }
-
         }
         return exAequo ? -1 : maxInd;
     }
 
 
     /**
-     * Calculates the mean value of the numbers in the list.
-     * @param numbers - list of numbers of which mean value is calculated
-     * @return mean value of numbers
-     */
-    static double mean(ArrayList<Double> numbers) {
-        double sum = 0;
-        for(Double num: numbers) sum += num;
-        return sum / numbers.size();
-    }
-
-    /**
-     * Calculates the variance with formula VX = EX[(X - EX)^2]
-     * @param numbers - list of numbers of which variance is calculated
-     * @return variance of these numbers
-     */
-    static double variance(ArrayList<Double> numbers) {
-        double sum = 0;
-        double mean = mean(numbers);
-
-        for(Double num: numbers) sum += (num-mean)*(num-mean);
-        return sum/numbers.size();
-    }
-
-    /**
-     * returns standard deviation of the list of numbers using formula std = sqrt(VX)
-     * @param numbers - list of numbers of which standard deviation is calculated
-     * @return standard deviation of given numbers
-     */
-    static double stdDev(ArrayList<Double> numbers) {
-        return sqrt(variance(numbers));
-    }
-
-    /**
-     *
-     * @param xs - first vector
-     * @param ys - second vector
-     * @return dot product of two vectors
-     */
-    static double dotProd(List<Double> xs, List<Double> ys) {
-        double sum = 0;
-        for(int i = 0; i < xs.size(); i++) {
-            sum += xs.get(i)*ys.get(i);
-        }
-        return sum;
-    }
-
-    /**
-     * gets list of x coordinates of all given samples
-     * @param samples - list of samples of which x coordinates are got.
-     * @return - list of x coordinates of given samples
+     * Adds the value to the sum sums[i] with Neumaier compensation: rounding error of every addition is collected
+     * in sums[i+1], so the result sums[i] + sums[i+1] is accurate even if values are big and close to each other
+     * (e.g. coordinates of samples far from the origin).
+     * @param sums - pairs of sums and their compensations
+     * @param i - index of the sum (its compensation is on the index i+1)
+     * @param value - added value
      */
-    static ArrayList<Double> getXs(ArrayList<Sample> samples) {
-        ArrayList<Double> xs = new ArrayList<>();
-
-        for(Sample s: samples) {
-            xs.add(s.getX());
-        }
-        return xs;
+    private static void addCompensated(double[] sums, int i, double value) {
+        double sum = sums[i], total = sum + value;
+        sums[i+1] += Math.abs(sum) >= Math.abs(value) ? (sum - total) + value : (value - total) + sum;
+        sums[i] = total;
     }
 
     /**
-     * gets list of y coordinates of all given samples
-     * @param samples - list of samples of which y coordinates are got.
-     * @return - list of y coordinates of given samples
+     * Calculates the mean value of the first n numbers of the array (with compensated summation).
+     * @param numbers - array of numbers of which mean value is calculated
+     * @param n - how many numbers are used
+     * @return mean value of numbers
      */
-    static ArrayList<Double> getYs(ArrayList<Sample> samples) {
-        ArrayList<Double> ys = new ArrayList<>();
-
-        for(Sample s: samples) {
-            ys.add(s.getY());
-        }
-        return ys;
+    static double mean(double[] numbers, int n) {
+        double[] sums = new double[2];
+        for(int i = 0; i < n; i++) addCompensated(sums, 0, numbers[i]);
+        return (sums[0] + sums[1]) / n;
     }
 
     /**
-     * calculates mean of numbers and moves all of them on that average value.
-     * That means that new numbers have mean exactly equals to 0
-     * @param numbers - list of numbers to centered
+     * Fused kernel of all statistics of two arrays: means, variances and covariance computed together
+     * in two passes (means in the first one, deviations from them in the second one) with compensated sums.
+     * The second pass also sums deviations themselves, which should be 0, and removes their error
+     * from the sums of squares (corrected two-pass algorithm).
+     * @param xs - first array of numbers (e.g. x coordinates)
+     * @param ys - second array of numbers (e.g. y coordinates)
+     * @param n - how many numbers are used
+     * @return moments of pairs (xs[i], ys[i]), also linear regression and correlation can be read from them
      */
-    static void zeroCenter(ArrayList<Double> numbers) {
-        double mean = mean(numbers);
-
-        for(int i = 0; i < numbers.size(); i++) {
-            numbers.set(i, numbers.get(i) - mean);
+    static Moments moments(double[] xs, double[] ys, int n) {
+        Moments moments = new Moments();
+        if(n == 0) return moments;
+
+        double[] sums = new double[4];
+        for(int i = 0; i < n; i++) {
+            addCompensated(sums, 0, xs[i]);
+            addCompensated(sums, 2, ys[i]);
         }
-    }
-
-    /**
-     * calculates mean of x and y coordinates and moves all of samples on that average vector.
-     * That means that new samples have mean exactly equals in point (0,0)
-     * @param samples - list of samples to centered
-     */
-    static void zeroCenterSamples(ArrayList<Sample> samples) {
-        double meanX = mean(getXs(samples));
-        double meanY = mean(getYs(samples));
-
-        moveAllSamples(samples, -meanX, -meanY);
-    }
-
-    /**
-     * move all samples on vector (dx, dy)
-     * @param samples - list of samples to moved
-     * @param dx - x difference
-     * @param dy - y difference
-     */
-    static void moveAllSamples(ArrayList<Sample> samples, double dx, double dy) {
-        for (Sample sample : samples) {
-            sample.move(dx, dy);
+        double meanX = (sums[0] + sums[1]) / n, meanY = (sums[2] + sums[3]) / n;
+
+        // deviations of x, of y, squares of deviations of x, of y and their products
+        sums = new double[10];
+        for(int i = 0; i < n; i++) {
+            double dx = xs[i] - meanX, dy = ys[i] - meanY;
+            addCompensated(sums, 0, dx);
+            addCompensated(sums, 2, dy);
+            addCompensated(sums, 4, dx*dx);
+            addCompensated(sums, 6, dy*dy);
+            addCompensated(sums, 8, dx*dy);
         }
+        double deviationsX = sums[0] + sums[1], deviationsY = sums[2] + sums[3];
+        moments.set(n, meanX + deviationsX/n, meanY + deviationsY/n,
+                sums[4] + sums[5] - deviationsX*deviationsX/n,
+                sums[6] + sums[7] - deviationsY*deviationsY/n,
+                sums[8] + sums[9] - deviationsX*deviationsY/n);
+        return moments;
     }
 
     /**
-     * Calculates covariance of x and y coordinates using formula Cov(X, Y) = E[(X-EX)*(Y-EY)]
-     * @param samples - list of samples of which covariance will be calculated
-     * @return - covariance between x and y coordinates of all samples
+     * @param store - samples of the simulation
+     * @return moments of x and y coordinates of all samples (see the fused kernel {@code moments(xs, ys, n)})
      */
-    static double covariance(ArrayList<Sample> samples) {
-        if(samples.size() == 0) { return 0; }
-
-        ArrayList<Double> xs = getXs(samples);
-        ArrayList<Double> ys = getYs(samples);
-
-        zeroCenter(xs);
-        zeroCenter(ys);
-
-        return dotProd(xs, ys) / samples.size();
+    static Moments moments(SampleStore store) {
+        return moments(store.xs(), store.ys(), store.size());
     }
 
     /**
      * computes covariance matrix for given data in R^2
      * since Cov(X,Y) = Cov(Y,X) then covariance matrix will always be symmetric
-     * if samples list is empty returns zero matrix to avoid dividing by 0
-     * @param samples - current samples in the simulation
+     * if there are no samples returns zero matrix to avoid dividing by 0
+     * @param moments - running moments of current samples in the simulation
      * @return Matrix [Var(X)  , Cov(X,Y) ]
      *                [Cov(X,Y), Var(Y)   ]
      */
-    static Matrix2x2 covarianceMatrix(ArrayList<Sample> samples) {
-        if(samples.size() == 0) { return new Matrix2x2(0,0,0,0); }
-
-        ArrayList<Double> xs = getXs(samples);
-        ArrayList<Double> ys = getYs(samples);
+    static Matrix2x2 covarianceMatrix(Moments moments) {
+        if(moments.count() == 0) { return new Matrix2x2(0,0,0,0); }
 
-        zeroCenter(xs);
-        zeroCenter(ys);
-
-        // when data is centered compute matrix A^T * A and divide all values by amount of samples to receive Cov matrix
-        double varX = dotProd(xs, xs) / samples.size();
-        double covXY = dotProd(xs, ys) / samples.size();
-        double varY = dotProd(ys, ys) / samples.size();
-        return new Matrix2x2(varX, covXY, covXY, varY);
+        double covXY = moments.covariance();
+        return new Matrix2x2(moments.varianceX(), covXY, covXY, moments.varianceY());
     }
 
     /**
-     * @param samples - list of samples in the simulation
+     * @param moments - running moments of samples in the simulation
      * @return the correlation between x and y coordinates
      */
-    static double correlation(ArrayList<Sample> samples) {
-        return covariance(samples)/(stdDev(getXs(samples))*stdDev(getYs(samples)));
+    static double correlation(Moments moments) {
+        return moments.covariance()/sqrt(moments.varianceX()*moments.varianceY());
     }
 
     /**
      * fit the model of linear regression with given samples
-     * @param samples - the list of samples to which the straight line is determined
+     * a = Cov(X,Y)/Var(X) (the same as rho*std(Y)/std(X)) and b = EY - a*EX
+     * @param moments - running moments of samples to which the straight line is determined
      * @return table of [a, b]
      */
-    static double[] fitLinearRegressionModel(ArrayList<Sample> samples) {
-        ArrayList<Double> xs = getXs(samples);
-        ArrayList<Double> ys = getYs(samples);
-
-        double rho = correlation(samples);
-        double devX = stdDev(xs);
-        double devY = stdDev(ys);
+    static double[] fitLinearRegressionModel(Moments moments) {
+        double a = moments.covariance()/moments.varianceX();
 
-        double a = rho*devY/devX;
+        return new double[] {a, moments.meanY()-a*moments.meanX()};
+    }
 
-        return new double[] {a, mean(ys)-a*mean(xs)};
+    /**
+     * Sum of squared vertical distances between samples and the line y = ax + b, computed only from moments:
+     * E[(Y - aX - b)^2] = Var(Y) - 2a*Cov(X,Y) + a^2*Var(X) + (EY - a*EX - b)^2
+     * @param moments - running moments of samples
+     * @param a - direct factor of the line
+     * @param b - free factor of the line
+     * @return sum of squared errors of all samples
+     */
+    static double squaredError(Moments moments, double a, double b) {
+        double offset = moments.meanY() - a*moments.meanX() - b;
+        double mean = moments.varianceY() - 2*a*moments.covariance() + a*a*moments.varianceX() + offset*offset;
+        return moments.count()*Math.max(0, mean);
     }
 
     public static double sigmoid(double x) {
         return 1.0 / (1.0 + exp(-x));
     }
 
-    public static double sigmoidPrime(double x) {
-        return sigmoid(x)*(1 - sigmoid(x));
-    }
-
     /**
-     * fits the model of logistic regression in R^2.
-     * takes only red and blue samples and performs zero centering
-     * then finds the best weights using stochastic gradient descent with batch size = 1
-     * last thing is to move all samples by its old mean values
-     * because zero centering is only to improve efficiency of algorithm not to transform original data
-     * bias is moved by that means as well.
-     * that means zero centering is not noticeable outside this function.
-     * @param samples - list of all samples
+     * fits the model of logistic regression in R^2 with stochastic gradient descent (batch size = 1).
+     * See {@code LogisticTrainer} for other sizes of batches and early stopping.
+     * @param store - all samples
      * @param epochs - number of iteration of gradient descent
      * @param eta - step size of updating the weights
      * @return table [wx, wy, bias]
      */
-    public static double[] fitLogisticRegressionModel(ArrayList<Sample> samples, int epochs, double eta) {
-        ArrayList<Sample> trainingSamples = new ArrayList<>();
-
-        for(Sample sample: samples) {
-            if(sample.category() == 1 || sample.category() == 2) {
-                trainingSamples.add(sample);
-            }
-        }
-
-        double meanX = mean(getXs(trainingSamples));
-        double meanY = mean(getYs(trainingSamples));
-        zeroCenterSamples(trainingSamples);
-
-        // should be random values but with constant initial values, line looks more stable
-        double wx = 0.1;
-        double wy = -0.1;
-        double bias = 0.2;
-
-        for(int i = 0; i < epochs; i++) {
-            Collections.shuffle(trainingSamples);
-            for(Sample sample: trainingSamples) {
-                double input = wx*sample.getX() + wy*sample.getY() + bias;
-                double output = sigmoid(input);
-                double error = eta*(sample.category()-1 - output)*sigmoidPrime(input);
-
-                wx += error*sample.getX();
-                wy += error*sample.getY();
-                bias += error;
-            }
-        }
-        moveAllSamples(trainingSamples, meanX, meanY);
-        return new double[] {wx, wy, bias - (wx*meanX + wy*meanY)};
+    public static double[] fitLogisticRegressionModel(SampleStore store, int epochs, double eta) {
+        return new LogisticTrainer().train(store, epochs, eta);
     }
 
     /**
@@ -327,43 +273,60 @@ public class MathUtils {
     }
 
     /**
-     * Predicts class of neutral sample checking which class appears most frequent
-     * int the neighbours list.
+     * Checks which class appears most frequent in the first k neighbours.
      * if there are many classes that are equally frequent, reduces k by one and performs voting once again.
-     * @param neutral - predicted sample
-     * @param neighbours - list of samples sorted from closest to farthest
+     * Doesn't need any sample, so it's used also for points of the plane (see DecisionRegions).
+     * @param categories - classes of neighbours sorted from closest to farthest
+     * @param count - number of neighbours
      * @param k - how many neighbours are counted in voting
+     * @param votes - reused array with {@code VOTES} cells
+     * @return predicted class
      */
-    private static void voting(Sample neutral, List<Sample> neighbours, int k) {
-        Integer[] values = new Integer[]{0,0,0,0,0,0};
+    static int vote(int[] categories, int count, int k, int[] votes) {
+        for(; k > 0; k--) {
+            Arrays.fill(votes, 0);
+            for(int i = 0; i < Integer.min(k, count); i++) {
+                votes[categories[i] - 1] += 1;
+            }
 
-        for (int i = 0; i < Integer.min(k, neighbours.size()); i++) {
-            Sample neighbour = neighbours.get(i);
-            values[neighbour.category() - 1] += 1;
+            int predictedCategory = argmax(votes)+1;
+            if(predictedCategory != 0) {
+                return predictedCategory;
+            }
         }
+        return 0;
+    }
 
-        int predictedCategory = argmax(values)+1;
-
-        if(predictedCategory == 0) {
-            voting(neutral, neighbours, k-1);
-        } else {
-            neutral.setPredictedColor(DrawUtils.sampleColors[predictedCategory]);
+    /**
+     * Mean value of neighbours (KNN regression).
+     * In the weighted version every neighbour counts with the weight 1/distance, but if some neighbours
+     * are in the distance 0 only they are averaged. Like {@code vote} it's used also for points of the plane.
+     * @param values - values of neighbours sorted from closest to farthest
+     * @param distances - distances of neighbours (only for the weighted version)
+     * @param count - number of neighbours
+     * @param weighted - true if closer neighbours count more
+     * @return predicted value or 0 if there are no neighbours
+     */
+    static double average(double[] values, double[] distances, int count, boolean weighted) {
+        if(count == 0) return 0;
+
+        double sum = 0, weights = 0;
+        boolean exact = weighted && distances[0] == 0;
+        for(int i = 0; i < count; i++) {
+            double weight = !weighted ? 1 : exact ? (distances[i] == 0 ? 1 : 0) : 1 / distances[i];
+            sum += weight * values[i];
+            weights += weight;
         }
+        return sum / weights;
     }
 
     /**
-     * for each neutral sample performs {@code voting} to predict their classes and
-     * creates KNNInterface to visualize this algorithm in the KNN simulation
+     * divides all dataset to training and testing (neutral) samples
      * @param samples - list of all samples
-     * @param k - how many neighbours are counted in voting
-     * @return - list of KNNInterface
+     * @param training - list to which samples with known class are added
+     * @param neutrals - list to which neutral samples are added
      */
-    public static ArrayList<KNNInterface> KNNAlgorithm(ArrayList<Sample> samples, int k) {
-        ArrayList<KNNInterface> interfaces = new ArrayList<>();
-        ArrayList<Sample> training = new ArrayList<>();
-        ArrayList<Sample> neutrals = new ArrayList<>();
-
-        // divides all dataset to training and testing samples
+    public static void splitSamples(List<Sample> samples, List<Sample> training, List<Sample> neutrals) {
         for(Sample sample: samples) {
             if(sample.category() != 0) {
                 training.add(sample);
@@ -371,17 +334,180 @@ public class MathUtils {
                 neutrals.add(sample);
             }
         }
+    }
+
+    /**
+     * for each neutral sample finds k nearest neighbours, performs {@code vote} (or {@code average} in regression)
+     * to predict their classes and sets KNNInterfaces to visualize this algorithm in the KNN simulation.
+     * Interfaces are reused: the i-th interface is set in place for the i-th neutral sample.
+     * When there are many neutral samples they are classified in parallel on the fork-join pool,
+     * predicted colors are set only by the calling thread after all of them are ready.
+     * @param neutrals - list of neutral samples
+     * @param engine - engine which finds neighbours among training samples (not empty)
+     * @param k - how many neighbours are counted in voting
+     * @param mode - classification or regression
+     * @param range - values of training samples (only for regression)
+     * @param interfaces - interfaces of neutral samples (as many as neutral samples)
+     */
+    public static void KNNAlgorithm(List<Sample> neutrals, NeighbourEngine engine, int k, KNNMode mode, ValueRange range, List<KNNInterface> interfaces) {
+        if(neutrals.size() < PARALLEL_THRESHOLD) {
+            KNNBuffers buffers = new KNNBuffers(k);
+            for(int i = 0; i < neutrals.size(); i++) {
+                KNNClassify(neutrals.get(i), engine, k, mode, range, buffers, interfaces.get(i));
+            }
+            return;
+        }
 
-        // for each test sample takes k nearest neighbours and performs voting and creates KNNInterfaces
-        for(Sample neutral: neutrals) {
-            training.sort(new DistComparator(neutral));
-            List<Sample> neighbours = training.subList(0, Integer.min(k, training.size()));
+        ForkJoinPool.commonPool().invoke(new KNNTask(neutrals, engine, k, mode, range, interfaces, 0, neutrals.size()));
+        for(int i = 0; i < neutrals.size(); i++) {
+            neutrals.get(i).setPredictedColor(interfaces.get(i).predictedColor);
+        }
+    }
 
-            if(neighbours.size() > 0) {
-                voting(neutral, neighbours, k);
-                interfaces.add(new KNNInterface(neutral, neighbours));
+    /**
+     * Buffers used by the classification of one neutral sample, reused by the next ones.
+     * Every thread needs its own buffers.
+     */
+    static class KNNBuffers {
+        final TopKSelector selector = new TopKSelector();
+        final ArrayList<Sample> neighbours;
+        final int[] categories;
+        final double[] values, distances;
+        final int[] votes = new int[VOTES];
+
+        KNNBuffers(int k) {
+            neighbours = new ArrayList<>(k);
+            categories = new int[k];
+            values = new double[k];
+            distances = new double[k];
+        }
+    }
+
+    /**
+     * Classifies neutral samples [from, to) and sets their interfaces (every interface is set by only one task).
+     * Doesn't change any sample.
+     */
+    @SuppressWarnings("serial")
+    private static class KNNTask extends RecursiveAction {
+        // ranges with fewer neutral samples are not divided
+        private static final int LEAF_SIZE = 256;
+        private final List<Sample> neutrals;
+        private final NeighbourEngine engine;
+        private final int k, from, to;
+        private final KNNMode mode;
+        private final ValueRange range;
+        private final List<KNNInterface> interfaces;
+
+        KNNTask(List<Sample> neutrals, NeighbourEngine engine, int k, KNNMode mode, ValueRange range, List<KNNInterface> interfaces, int from, int to) {
+            this.neutrals = neutrals;
+            this.engine = engine;
+            this.k = k;
+            this.mode = mode;
+            this.range = range;
+            this.interfaces = interfaces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new KNNTask(neutrals, engine, k, mode, range, interfaces, from, middle),
+                        new KNNTask(neutrals, engine, k, mode, range, interfaces, middle, to));
+                return;
+            }
+
+            KNNBuffers buffers = new KNNBuffers(k);
+            for(int i = from; i < to; i++) {
+                KNNPredict(neutrals.get(i), engine, k, mode, range, buffers, interfaces.get(i));
+            }
+        }
+    }
+
+    /**
+     * finds k nearest neighbours of one neutral sample, performs {@code vote} to predict its class,
+     * sets the predicted color of the sample and sets its KNNInterface
+     * @param neutral - neutral sample
+     * @param engine - engine which finds neighbours among training samples
+     * @param k - how many neighbours are counted in voting
+     * @param mode - classification or regression (then the color shows the predicted value)
+     * @param range - values of training samples (only for regression)
+     * @param buffers - reused buffers
+     * @param inter - reused interface which is set for the sample
+     */
+    public static void KNNClassify(Sample neutral, NeighbourEngine engine, int k, KNNMode mode, ValueRange range, KNNBuffers buffers, KNNInterface inter) {
+        KNNPredict(neutral, engine, k, mode, range, buffers, inter);
+        neutral.setPredictedColor(inter.predictedColor);
+    }
+
+    /**
+     * The same as {@code KNNClassify} but doesn't change the sample, so it can be run by many threads at once
+     * (with different buffers and interfaces). The predicted color is only saved in the interface.
+     * @param neutral - neutral sample
+     * @param engine - engine which finds neighbours among training samples
+     * @param k - how many neighbours are counted in voting
+     * @param mode - classification or regression
+     * @param range - values of training samples (only for regression)
+     * @param buffers - reused buffers of the current thread
+     * @param inter - reused interface which is set for the sample
+     */
+    private static void KNNPredict(Sample neutral, NeighbourEngine engine, int k, KNNMode mode, ValueRange range, KNNBuffers buffers, KNNInterface inter) {
+        TopKSelector selector = buffers.selector;
+        engine.nearest(neutral.getX(), neutral.getY(), k, selector);
+
+        buffers.neighbours.clear();
+        for(int i = 0; i < selector.size(); i++) {
+            Sample neighbour = engine.sample(selector.id(i));
+            buffers.neighbours.add(neighbour);
+            buffers.categories[i] = neighbour.category();
+            buffers.values[i] = neighbour.getValue();
+        }
+        Color predictedColor;
+        if(mode == KNNMode.CLASSIFICATION) {
+            predictedColor = DrawUtils.sampleColors[vote(buffers.categories, selector.size(), k, buffers.votes)];
+        } else {
+            boolean weighted = mode == KNNMode.WEIGHTED_REGRESSION;
+            for(int i = 0; weighted && i < selector.size(); i++) {
+                buffers.distances[i] = engine.distance(selector.distance(i));
+            }
+            double value = average(buffers.values, buffers.distances, selector.size(), weighted);
+            predictedColor = DrawUtils.heatColors[range.heatIndex(value)];
+        }
+        double radius = selector.size() > 0 ? engine.distance(selector.distance(selector.size() - 1)) : 0;
+        inter.set(neutral, buffers.neighbours, radius, engine.metric(), predictedColor);
+    }
+
+    /**
+     * Measures which part of the true k nearest neighbours is found by the approximate engine.
+     * Only some of the queries are checked (evenly spaced), because the exact search is slow for many samples.
+     * @param exact - exact engine (e.g. KDTree)
+     * @param approximate - approximate engine built from the same training samples
+     * @param queries - points whose neighbours are searched (neutral samples)
+     * @param k - number of neighbours
+     * @param maxQueries - how many queries are checked at most
+     * @return recall from 0 to 1 (1 if there's nothing to check)
+     */
+    static double KNNRecall(NeighbourEngine exact, NeighbourEngine approximate, List<Sample> queries, int k, int maxQueries) {
+        TopKSelector exactSelector = new TopKSelector(), approximateSelector = new TopKSelector();
+        int step = Math.max(1, queries.size() / maxQueries);
+        long found = 0, all = 0;
+
+        for(int q = 0; q < queries.size(); q += step) {
+            Sample query = queries.get(q);
+            exact.nearest(query.getX(), query.getY(), k, exactSelector);
+            approximate.nearest(query.getX(), query.getY(), k, approximateSelector);
+
+            for(int i = 0; i < exactSelector.size(); i++) {
+                for(int j = 0; j < approximateSelector.size(); j++) {
+                    if(exactSelector.id(i) == approximateSelector.id(j)) {
+                        found++;
+                        break;
+                    }
+                }
             }
+            all += exactSelector.size();
         }
-        return interfaces;
+        return all == 0 ? 1 : (double)found / all;
     }
 }
@@ -1,6 +1,5 @@
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import static java.lang.StrictMath.*;
 
@@ -132,11 +131,11 @@ public class Matrix2x2 {
     /**
      * @return returns eigenvectors which has bigger corresponding eigenvalue.
      */
-    ArrayList<Double> greaterEigenvector() {
+    double[] greaterEigenvector() {
         if(eigenvectorsAndValues[4] > eigenvectorsAndValues[5]) {
-            new ArrayList<>(Arrays.asList(eigenvectorsAndValues[0], eigenvectorsAndValues[1]));
+            return new double[] {eigenvectorsAndValues[0], eigenvectorsAndValues[1]};
         }
-        return new ArrayList<>(Arrays.asList(eigenvectorsAndValues[2], eigenvectorsAndValues[3]));
+        return new double[] {eigenvectorsAndValues[2], eigenvectorsAndValues[3]};
     }
 
     double slopeOfGreaterEigenvector() {
@@ -297,7 +296,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
      */
     void drawEigenvectors(CoordinateSystem plane) {
         DrawUtils.g2.setColor(DrawUtils.fontColor);
-        DrawUtils.g2.setStroke(new BasicStroke(2));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
 
         plane.drawVector(eigenvectorsAndValues[0], eigenvectorsAndValues[1]);
         plane.drawVector(eigenvectorsAndValues[2], eigenvectorsAndValues[3]);
@@ -308,7 +307,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
      * @param plane - current cartesian plane
      */
     void drawAxes(CoordinateSystem plane) {
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.setColor(DrawUtils.red);
         plane.drawStraightLine(c/a, 0);
         DrawUtils.g2.setColor(DrawUtils.green);
@@ -323,7 +322,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
      */
     void drawTranspose(CoordinateSystem plane) {
         DrawUtils.g2.setColor(DrawUtils.lightBlue);
-        DrawUtils.g2.setStroke(new BasicStroke(2));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
         drawOtherMatrixBasis(transpose(), plane);
     }
 
@@ -335,7 +334,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
      */
     void drawInverse(CoordinateSystem plane) {
         DrawUtils.g2.setColor(DrawUtils.gold);
-        DrawUtils.g2.setStroke(new BasicStroke(2));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
         drawOtherMatrixBasis(inverse(), plane);
     }
 
@@ -365,7 +364,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
             return; // matrix is singular or has imaginary eigenvalues
         }
         DrawUtils.g2.setColor(DrawUtils.fontColor);
-        DrawUtils.g2.setStroke(new BasicStroke(2));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
         plane.drawStraightLine(eigenvectorsAndValues[1]/eigenvectorsAndValues[0], 0);
         plane.drawStraightLine(eigenvectorsAndValues[3]/eigenvectorsAndValues[2], 0);
     }
@@ -380,7 +379,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
             return; // matrix is singular or has imaginary eigenvalues
         }
         DrawUtils.g2.setColor(DrawUtils.fontColor);
-        DrawUtils.g2.setStroke(new BasicStroke(2));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(2));
         if(eigenvectorsAndValues[4] > eigenvectorsAndValues[5]) {
             plane.drawStraightLine(eigenvectorsAndValues[1]/eigenvectorsAndValues[0], 0);
         } else {
@@ -413,7 +412,7 @@ class GraphicsMatrix2x2 extends Matrix2x2 {
         if(almostSingular()) {
             return;
         }
-        DrawUtils.g2.setStroke(new BasicStroke(1));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(1));
 
         DrawUtils.g2.setColor(DrawUtils.transparentRed);
         double direction = c/a;
@@ -59,32 +59,47 @@ public class MatrixCoordinateSystem extends CoordinateSystem {
     }
 
     /**
-     * Draws identity grid, samples and axes of the matrix.
+     * Draws identity grid and, if corresponding visibility variable is equal to true,
+     * the determinant and the matrix grid.
+     */
+    @Override
+    void drawBackground() {
+        drawLines();
+
+        if(determinantVisibility) matrix.drawDeterminant(this);
+        if(gridVisibility) matrix.drawGrid(scale, camera, this);
+    }
+
+    /**
+     * Background depends also on values of the matrix and visibility of its grid and determinant.
+     * @return state of the background
+     */
+    @Override
+    long backgroundState() {
+        long state = super.backgroundState();
+        state = Layer.combine(state, (determinantVisibility ? 1 : 0) + (gridVisibility ? 2 : 0));
+        state = Layer.combine(Layer.combine(state, matrix.a), matrix.b);
+        return Layer.combine(Layer.combine(state, matrix.c), matrix.d);
+    }
+
+    /**
+     * Draws samples and axes of the matrix.
      * If corresponding visibility variable is equal to true then draws
-     * - matrix grid
      * - eigenvectors as lines ( doesn't draw it in every case. See @code{GraphicalMatrix2x2#drawEigenvectorsLines})
      * - transposition
      * - inverse matrix
-     * - determinant
      * - projected vectors
-     * At the end draws side menu.
      */
     @Override
-    public void draw() {
-        drawLines();
-
-        if(determinantVisibility) matrix.drawDeterminant(this);
+    void drawData() {
         matrix.drawBasis(this, true);
         matrix.drawAxes(this);
-        if(gridVisibility) matrix.drawGrid(scale, camera, this);
         if(eigenvectorsVisibility) matrix.drawEigenvectorsLines(this);
         if(transposeVisibility) matrix.drawTranspose(this);
         if(inverseVisibility) matrix.drawInverse(this);
 
         drawSamples();
-        if(projectVisibility) { for(Sample s: projected) s.draw(camera, scale); }
-
-        drawInterface();
+        if(projectVisibility) drawSampleList(projected);
     }
 
     /**
@@ -129,6 +144,7 @@ public class MatrixCoordinateSystem extends CoordinateSystem {
     public boolean onMouseDragged(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
         if(matrix.isSelected()) {
             matrix.moveBase(simulationX(mouseX), simulationY(mouseY));
+            invalidateData();
         } else if(!super.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY)) {
             return true; // if super.onMouseDragged returned false then there is no need to update
                          // since sample has not been changed
@@ -197,7 +213,7 @@ public class MatrixCoordinateSystem extends CoordinateSystem {
      * Label buttons about matrix determinant and eigenvalues are refreshed as well
      */
     @Override
-    public void update() {
+    void updateSimulation() {
         for(Sample sample: projected) {
             menu.removeSampleLabel(sample);
         }
@@ -205,7 +221,7 @@ public class MatrixCoordinateSystem extends CoordinateSystem {
         projected.clear();
         for(Sample s: samples) {
             Sample s_prod = matrix.project(s);
-            s_prod.setColor(new Color(s.getColor().getRed(), s.getColor().getGreen(), s.getColor().getBlue(), 130));
+            s_prod.setColor(DrawUtils.withAlpha(s.getColor(), 130));
             projected.add(s_prod);
             menu.addSampleLabel(s_prod, STANDARD_BUTTON_HEIGHT, false);
         }
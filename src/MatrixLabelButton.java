@@ -30,13 +30,13 @@ class MatrixLabelButton extends Button {
         String text;
 
         // first, prints matrix name and equal sign (and update labelWidth at the end)
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         text = matrix.getName() + " = ";
         DrawUtils.drawStringWithLeftAlignment(text, x+labelWidth, y+height/2);
         labelWidth += DrawUtils.stringWidth(text);
 
         // prints big square bracket representing matrix
-        DrawUtils.setFont(new Font("TimesRoman Plain", Font.PLAIN, fontSize*5));
+        DrawUtils.setFont(DrawUtils.font("TimesRoman Plain", Font.PLAIN, fontSize*5));
         text = "[";
         DrawUtils.drawStringWithLeftAlignment(text, x+labelWidth, (int)(y+height*0.4));
         labelWidth += DrawUtils.stringWidth(text);
@@ -45,7 +45,7 @@ class MatrixLabelButton extends Button {
         DrawUtils.g2.setColor(DrawUtils.lightRed);
 
         // prints first column of matrix
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         text = Double.toString(MathUtils.round(matrix.a, 2));
         DrawUtils.drawStringWithLeftAlignment(text, x+labelWidth, (int)(y+height*0.3));
         text = Double.toString(MathUtils.round(matrix.c, 2));
@@ -63,7 +63,7 @@ class MatrixLabelButton extends Button {
 
         // prints right bracket of the matrix
         DrawUtils.g2.setColor(textCol);
-        DrawUtils.setFont(new Font("TimesRoman Plain", Font.PLAIN, fontSize*5));
+        DrawUtils.setFont(DrawUtils.font("TimesRoman Plain", Font.PLAIN, fontSize*5));
         DrawUtils.drawStringWithRightAlignment("]", (int)(x+width*0.95), (int)(y+height*0.4));
     }
 
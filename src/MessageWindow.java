@@ -39,7 +39,7 @@ public class MessageWindow {
         upperBound = (int) (height*0.15 + 48);
         lowerBound = (int) (height*0.95);
 
-        DrawUtils.setFont(new Font("Arial", Font.PLAIN, FONT_SIZE));
+        DrawUtils.setFont(DrawUtils.font("Arial", Font.PLAIN, FONT_SIZE));
         ArrayList<String> lines = TextManager.readMessageContent(width, filename);
         title = lines.remove(0);
 
@@ -77,7 +77,7 @@ public class MessageWindow {
         selected = false;
         title = "";
 
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, (int) (FONT_SIZE *1.7)));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, (int) (FONT_SIZE *1.7)));
         buttons.add(new ClickableButton((int)(x+0.8*width), y,
                 (int)(0.2*width), heightOfTopBar, StringsResources.close(), (int) (FONT_SIZE *1.2)));
     }
@@ -102,7 +102,7 @@ public class MessageWindow {
         DrawUtils.g2.fillRect(x, y, width, height);
 
         DrawUtils.g2.setColor(DrawUtils.primaryColor);
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.drawRect(x, y, width, height);
 
         DrawUtils.g2.setColor(DrawUtils.secondaryColor);
@@ -114,11 +114,11 @@ public class MessageWindow {
         }
 
         DrawUtils.g2.setColor(DrawUtils.white);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, (int) (FONT_SIZE *1.7)));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, (int) (FONT_SIZE *1.7)));
         DrawUtils.drawCenteredString(title, x+width/2, (int) (y+1.5*heightOfTopBar + DrawUtils.stringHeight(title)));
 
 
-        DrawUtils.setFont(new Font("Arial", Font.PLAIN, FONT_SIZE));
+        DrawUtils.setFont(DrawUtils.font("Arial", Font.PLAIN, FONT_SIZE));
         for (TextLine line: text) {
             line.draw(y + upperBound, y + lowerBound);
         }
@@ -0,0 +1,106 @@
+/**
+ * Distance used by the KNN simulation. The kind is checked by a switch (never by a virtual call):
+ * {@code distance} checks it on every call (e.g. for every vantage point visited by VPTree),
+ * {@code distances} and buckets of VPTree check it once and then run a separate loop for every kind.
+ * Metrics are immutable, so a metric with other parameters is a new object.
+ */
+class Metric {
+    enum Kind { EUCLIDEAN, MANHATTAN, CHEBYSHEV, MINKOWSKI, WEIGHTED_EUCLIDEAN }
+
+    static final Metric EUCLIDEAN = new Metric(Kind.EUCLIDEAN, 2, 1, 1);
+
+    final Kind kind;
+    // exponent of the Minkowski metric
+    final double p;
+    // weights of coordinates of the weighted euclidean metric
+    final double weightX, weightY;
+
+    Metric(Kind kind, double p, double weightX, double weightY) {
+        this.kind = kind;
+        this.p = p;
+        this.weightX = weightX;
+        this.weightY = weightY;
+    }
+
+    /**
+     * @param dx - difference of x coordinates
+     * @param dy - difference of y coordinates
+     * @return distance between two points
+     */
+    double distance(double dx, double dy) {
+        switch(kind) {
+            case MANHATTAN: return Math.abs(dx) + Math.abs(dy);
+            case CHEBYSHEV: return Math.max(Math.abs(dx), Math.abs(dy));
+            case MINKOWSKI: return Math.pow(Math.pow(Math.abs(dx), p) + Math.pow(Math.abs(dy), p), 1/p);
+            case WEIGHTED_EUCLIDEAN: return Math.sqrt(weightX*dx*dx + weightY*dy*dy);
+            default: return Math.sqrt(dx*dx + dy*dy);
+        }
+    }
+
+    /**
+     * Distances from the point to many points at once. The kind is checked once for the whole range.
+     * @param xs - x coordinates of points
+     * @param ys - y coordinates of points
+     * @param from - first point of the range
+     * @param to - end of the range (exclusive)
+     * @param x - x coordinate of the point
+     * @param y - y coordinate of the point
+     * @param out - receives distances on the same positions as points
+     */
+    void distances(double[] xs, double[] ys, int from, int to, double x, double y, double[] out) {
+        switch(kind) {
+            case MANHATTAN:
+                for(int i = from; i < to; i++) {
+                    out[i] = Math.abs(xs[i] - x) + Math.abs(ys[i] - y);
+                }
+                break;
+            case CHEBYSHEV:
+                for(int i = from; i < to; i++) {
+                    out[i] = Math.max(Math.abs(xs[i] - x), Math.abs(ys[i] - y));
+                }
+                break;
+            case MINKOWSKI:
+                double inverse = 1/p;
+                for(int i = from; i < to; i++) {
+                    out[i] = Math.pow(Math.pow(Math.abs(xs[i] - x), p) + Math.pow(Math.abs(ys[i] - y), p), inverse);
+                }
+                break;
+            case WEIGHTED_EUCLIDEAN:
+                for(int i = from; i < to; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    out[i] = Math.sqrt(weightX*dx*dx + weightY*dy*dy);
+                }
+                break;
+            default:
+                for(int i = from; i < to; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    out[i] = Math.sqrt(dx*dx + dy*dy);
+                }
+        }
+    }
+
+    /**
+     * @return name of the metric (in the current language)
+     */
+    String name() {
+        switch(kind) {
+            case MANHATTAN: return StringsResources.manhattan();
+            case CHEBYSHEV: return StringsResources.chebyshev();
+            case MINKOWSKI: return StringsResources.minkowski() + " p=" + MathUtils.round(p, 2);
+            case WEIGHTED_EUCLIDEAN: return StringsResources.weightedEuclidean();
+            default: return StringsResources.euclidean();
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(!(other instanceof Metric)) return false;
+        Metric metric = (Metric) other;
+        return kind == metric.kind && p == metric.p && weightX == metric.weightX && weightY == metric.weightY;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(Layer.combine(Layer.combine(Layer.combine(kind.ordinal(), p), weightX), weightY));
+    }
+}
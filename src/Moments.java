@@ -0,0 +1,111 @@
+/**
+ * Running moments of coordinates of samples: their number, means, sums of squared deviations and
+ * the sum of products of deviations (sufficient statistics of covariance and linear regression).
+ * They are kept in Welford's form (means and deviations instead of raw sums like Σx²), which stays accurate
+ * also far from the origin. Adding, removing and moving a sample costs O(1), so statistics of the simulation
+ * don't have to scan all samples after every move.
+ */
+class Moments {
+    private long n;
+    private double meanX, meanY;
+    // sums of (x - meanX)^2, (y - meanY)^2 and (x - meanX)*(y - meanY)
+    private double squaresX, squaresY, products;
+
+    void clear() {
+        n = 0;
+        meanX = meanY = squaresX = squaresY = products = 0;
+    }
+
+    /**
+     * Computes moments again from all samples with the fused compensated kernel
+     * (removes rounding errors accumulated by many moves).
+     * @param store - synced samples of the simulation
+     */
+    void rebuild(SampleStore store) {
+        Moments exact = MathUtils.moments(store);
+        set(exact.n, exact.meanX, exact.meanY, exact.squaresX, exact.squaresY, exact.products);
+    }
+
+    /**
+     * @param n - number of samples
+     * @param meanX - mean of x coordinates
+     * @param meanY - mean of y coordinates
+     * @param squaresX - sum of (x - meanX)^2
+     * @param squaresY - sum of (y - meanY)^2
+     * @param products - sum of (x - meanX)*(y - meanY)
+     */
+    void set(long n, double meanX, double meanY, double squaresX, double squaresY, double products) {
+        this.n = n;
+        this.meanX = meanX;
+        this.meanY = meanY;
+        this.squaresX = Math.max(0, squaresX);
+        this.squaresY = Math.max(0, squaresY);
+        this.products = products;
+    }
+
+    void add(double x, double y) {
+        n++;
+        double oldMeanX = meanX, oldMeanY = meanY;
+        meanX += (x - meanX) / n;
+        meanY += (y - meanY) / n;
+        squaresX += (x - oldMeanX)*(x - meanX);
+        squaresY += (y - oldMeanY)*(y - meanY);
+        products += (x - oldMeanX)*(y - meanY);
+    }
+
+    /**
+     * Reverses {@code add} of the point (it has to be added before).
+     */
+    void remove(double x, double y) {
+        if(n <= 1) {
+            clear();
+            return;
+        }
+
+        n--;
+        double oldMeanX = meanX, oldMeanY = meanY;
+        meanX -= (x - meanX) / n;
+        meanY -= (y - meanY) / n;
+        squaresX = Math.max(0, squaresX - (x - meanX)*(x - oldMeanX));
+        squaresY = Math.max(0, squaresY - (y - meanY)*(y - oldMeanY));
+        products -= (x - meanX)*(y - oldMeanY);
+    }
+
+    /**
+     * @param oldX - x coordinate of the sample before the move
+     * @param oldY - y coordinate of the sample before the move
+     * @param newX - x coordinate of the sample after the move
+     * @param newY - y coordinate of the sample after the move
+     */
+    void move(double oldX, double oldY, double newX, double newY) {
+        remove(oldX, oldY);
+        add(newX, newY);
+    }
+
+    long count() {
+        return n;
+    }
+
+    double meanX() {
+        return meanX;
+    }
+
+    double meanY() {
+        return meanY;
+    }
+
+    /**
+     * @return variance of x coordinates (divided by n, like in the rest of MathUtils)
+     */
+    double varianceX() {
+        return n == 0 ? 0 : squaresX / n;
+    }
+
+    double varianceY() {
+        return n == 0 ? 0 : squaresY / n;
+    }
+
+    double covariance() {
+        return n == 0 ? 0 : products / n;
+    }
+}
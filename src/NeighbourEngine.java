@@ -0,0 +1,48 @@
+/**
+ * Finds nearest training samples for the KNN algorithm. Training samples have ids - their positions
+ * in the list from which the engine was built. Queries only read the engine, so many threads can use it at once.
+ * Exact engines are KDTree (euclidean) and VPTree (any metric), GridNeighbours is faster but approximate.
+ */
+interface NeighbourEngine {
+    /**
+     * Finds k training samples closest to the point. After the call the selector contains
+     * (key, id) pairs of neighbours (the key is the distance or the squared distance, see {@code distance}) sorted from the closest to the farthest
+     * (fewer than k if there are not enough samples).
+     * @param x - x coordinate of the point
+     * @param y - y coordinate of the point
+     * @param k - number of neighbours
+     * @param selector - reused selector which receives the result
+     */
+    void nearest(double x, double y, int k, TopKSelector selector);
+
+    /**
+     * @return metric in which neighbours are searched
+     */
+    Metric metric();
+
+    /**
+     * @param key - value kept in the selector after {@code nearest}
+     * @return distance in the metric of the engine
+     */
+    double distance(double key);
+
+    /**
+     * @param id - id of the sample returned by the selector
+     * @return training sample with that id
+     */
+    Sample sample(int id);
+
+    int size();
+
+    /**
+     * Starts following the sample which is being moved, so the engine doesn't have to be built again after every move.
+     * The engine uses the current position of the sample instead of the one from the time of building.
+     * @param sample - moved training sample
+     * @return false if there is no such sample in the engine
+     */
+    boolean setMoved(Sample sample);
+
+    void clearMoved();
+
+    boolean hasMoved();
+}
@@ -53,7 +53,7 @@ public class NumberInput {
 
         if(selected) {
             int caretX = x + width/15 + DrawUtils.stringWidth(text.substring(0,caret));
-            DrawUtils.g2.setStroke(new BasicStroke(2));
+            DrawUtils.g2.setStroke(DrawUtils.stroke(2));
             DrawUtils.g2.drawLine(caretX, y+height/4, caretX, y+3*height/4);
         }
     }
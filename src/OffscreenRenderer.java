@@ -0,0 +1,146 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Class that draws menus and simulations without any window.
+ * It owns its own image and installs its graphics engine in DrawUtils, so any GraphicsInterface
+ * (usually some CoordinateSystem) can be created, filled with samples and drawn to an image or a png file.
+ * On machines without display the program has to be run with {@code -Djava.awt.headless=true}
+ * (main method of this class sets it automatically). Like the whole program it has to be run from the
+ * directory with "data" and "fonts" folders.
+ */
+public class OffscreenRenderer {
+    /**
+     * Constructor of some coordinate system simulation. All simulations have the same
+     * constructor signature so it's enough to pass e.g. {@code KNNCoordinateSystem::new}
+     */
+    interface SimulationFactory<T extends CoordinateSystem> {
+        T create(int width, int height, Panel panel);
+    }
+
+    private static boolean fontsRegistered = false;
+    private final int width, height;
+    private final BufferedImage context;
+    private final Graphics2D g2;
+    // simulations need the panel but the offscreen one is never shown
+    private final Panel panel;
+
+    OffscreenRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        context = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        g2 = DrawUtils.prepareGraphics(context);
+        panel = new Panel(null);
+
+        // simulations measure strings in their constructors so the graphics engine has to be set before
+        DrawUtils.setGraphicsContext(g2);
+        if(!fontsRegistered) {
+            DrawUtils.registerFont("DAVIDBD.ttf");
+            DrawUtils.registerFont("AbrilFatface-Regular.otf");
+            fontsRegistered = true;
+        }
+    }
+
+    /**
+     * Creates a simulation which fills the whole image of this renderer.
+     * @param factory - constructor of the simulation (e.g. {@code PCACoordinateSystem::new})
+     * @return new simulation
+     */
+    <T extends CoordinateSystem> T createSimulation(SimulationFactory<T> factory) {
+        DrawUtils.setGraphicsContext(g2);
+        return factory.create(width, height, panel);
+    }
+
+    /**
+     * Adds samples to the simulation and updates it once after all of them are added.
+     * @param simulation - simulation created by this renderer
+     * @param xs - x coordinates of samples
+     * @param ys - y coordinates of samples
+     * @param categories - classes of samples (0 means neutral)
+     */
+    void loadSamples(CoordinateSystem simulation, double[] xs, double[] ys, int[] categories) {
+        DrawUtils.setGraphicsContext(g2);
+        for(int i = 0; i < xs.length; i++) {
+            simulation.loadSample(xs[i], ys[i], categories[i]);
+        }
+        simulation.update();
+    }
+
+    /**
+     * Draws given number of frames. Animations (like AutoMotion in tutorials) proceed one step per frame.
+     * Returned image is reused by the next call, so it should be copied if it has to be kept.
+     * @param graphics - menu or simulation to be drawn
+     * @param frames - how many frames should be drawn (at least one)
+     * @return image with the last frame
+     */
+    BufferedImage render(GraphicsInterface graphics, int frames) {
+        DrawUtils.setGraphicsContext(g2);
+        for(int i = 0; i < frames; i++) {
+            long start = FrameProfiler.start();
+            g2.setColor(DrawUtils.background);
+            g2.fillRect(0, 0, width, height);
+
+            graphics.draw();
+            FrameProfiler.record(FrameProfiler.Phase.FRAME, start);
+        }
+        return context;
+    }
+
+    /**
+     * Draws given number of frames and saves the last one as a png file.
+     * @param graphics - menu or simulation to be drawn
+     * @param frames - how many frames should be drawn (at least one)
+     * @param file - output file
+     * @throws IOException if the file cannot be written
+     */
+    void writePng(GraphicsInterface graphics, int frames, File file) throws IOException {
+        ImageIO.write(render(graphics, frames), "png", file);
+    }
+
+    /**
+     * Renders one simulation with random samples to the png file.
+     * Usage: {@code OffscreenRenderer <matrix|linear|logistic|knn|pca> <width> <height> <samples> <frames> <output.png>}
+     * @param args - arguments described above
+     * @throws IOException if the output file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        if(args.length != 6) {
+            System.out.println("Usage: OffscreenRenderer <matrix|linear|logistic|knn|pca> <width> <height> <samples> <frames> <output.png>");
+            return;
+        }
+
+        OffscreenRenderer renderer = new OffscreenRenderer(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        CoordinateSystem simulation;
+        switch(args[0]) {
+            case "matrix": simulation = renderer.createSimulation(MatrixCoordinateSystem::new); break;
+            case "linear": simulation = renderer.createSimulation(LRCoordinateSystem::new); break;
+            case "logistic": simulation = renderer.createSimulation(LogCoordinateSystem::new); break;
+            case "knn": simulation = renderer.createSimulation(KNNCoordinateSystem::new); break;
+            case "pca": simulation = renderer.createSimulation(PCACoordinateSystem::new); break;
+            default: {
+                System.out.println("Unknown simulation " + args[0]);
+                return;
+            }
+        }
+
+        // constant seed, so the same arguments always give the same picture
+        Random random = new Random(0);
+        int n = Integer.parseInt(args[3]);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int[] categories = new int[n];
+        for(int i = 0; i < n; i++) {
+            xs[i] = random.nextGaussian()*2;
+            ys[i] = xs[i]*0.5 + random.nextGaussian();
+            categories[i] = random.nextInt(3);
+        }
+        renderer.loadSamples(simulation, xs, ys, categories);
+        renderer.writePng(simulation, Integer.parseInt(args[4]), new File(args[5]));
+    }
+}
@@ -1,14 +1,25 @@
 import java.awt.*;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Class that simulates Principal Component Analysis.
  * All math of this algorithm are implemented in Matrix2x2 and MathUtils.
  */
 public class PCACoordinateSystem extends CoordinateSystem {
+    // projections which would move less than this (in pixels) are not computed again while a sample is dragged
+    private static final double MAX_PROJECTION_ERROR = 0.5;
+
+    // projected samples and sections to them in the order of samples,
+    // and the same objects by their samples (they are reused by next updates)
     private final ArrayList<Sample> projected = new ArrayList<>();
-    private ArrayList<Projection> projections = new ArrayList<>();
+    private final ArrayList<Projection> projections = new ArrayList<>();
+    private final HashMap<Sample, Sample> projectedOf = new HashMap<>();
+    private final HashMap<Sample, Projection> projectionOf = new HashMap<>();
+    // eigenvector which samples are projected onto and an upper bound of distances of samples from the origin
+    private double projectionX, projectionY, maxNorm;
     private GraphicsMatrix2x2 covarianceMatrix;
     private boolean covarianceMatrixVisibility, eigenvectorsVisibility, projectedSamplesVisibility;
 
@@ -29,7 +40,7 @@ public class PCACoordinateSystem extends CoordinateSystem {
     void initComponents() {
         super.initComponents();
         messageWindow = new MessageWindow(this, "data/"+StringsResources.languageShortcut()+"/PCA-Sim-Help");
-        covarianceMatrix = new GraphicsMatrix2x2(MathUtils.covarianceMatrix(samples));
+        covarianceMatrix = new GraphicsMatrix2x2(MathUtils.covarianceMatrix(moments));
         covarianceMatrix.setName("Cov");
     }
 
@@ -49,15 +60,12 @@ public class PCACoordinateSystem extends CoordinateSystem {
     }
 
     /**
-     * Draws cartesian plane lines and samples.
+     * Draws samples.
      * If corresponding visibility variable is true then
      * draws basis of covariance matrix, its eigenvectors and projected samples.
-     * At the end menu is drawn.
      */
     @Override
-    public void draw() {
-        drawLines();
-
+    void drawData() {
         if(covarianceMatrixVisibility) {
             covarianceMatrix.drawBasis(this, false);
         }
@@ -68,11 +76,9 @@ public class PCACoordinateSystem extends CoordinateSystem {
         }
 
         drawSamples();
-        if(projectedSamplesVisibility) { for(Sample s: projected) s.draw(camera, scale); }
+        if(projectedSamplesVisibility) drawSampleList(projected);
 
         for(Projection p: projections) p.draw(this);
-
-        drawInterface();
     }
 
     /**
@@ -84,13 +90,12 @@ public class PCACoordinateSystem extends CoordinateSystem {
     @Override
     public void onRightClick(double mouseX, double mouseY) {
         super.onRightClick(mouseX, mouseY);
-        covarianceMatrix.setValues(MathUtils.covarianceMatrix(samples));
         update();
     }
 
     /**
      * Performs CartesianPlane.onMouseDragged. If it returns true (means that some sample was moved)
-     * refreshes the covariance matrix and projected samples.
+     * refreshes the covariance matrix and projected samples (see {@code updateMovedSample}).
      * @param mouseX - current mouse x position (in pixels)
      * @param mouseY - current mouse y position (in pixels)
      * @param prevMouseX - mouse x position in previous frame (in pixels)
@@ -100,11 +105,27 @@ public class PCACoordinateSystem extends CoordinateSystem {
     @Override
     public boolean onMouseDragged(double mouseX, double mouseY, double prevMouseX, double prevMouseY) {
         if(super.onMouseDragged(mouseX, mouseY, prevMouseX, prevMouseY)) {
-            update();
+            if(movingSample != null && projectedOf.containsKey(movingSample)) {
+                updateMovedSample();
+            } else {
+                update();
+            }
         }
         return true;
     }
 
+    /**
+     * Projects all samples exactly after the drag (during dragging they could be up to {@code MAX_PROJECTION_ERROR} away).
+     * @param mouseX - current mouse x position (in pixels)
+     * @param mouseY - current mouse y position (in pixels)
+     */
+    @Override
+    public void onLeftMouseButtonReleased(double mouseX, double mouseY) {
+        boolean dragged = movingSample != null;
+        super.onLeftMouseButtonReleased(mouseX, mouseY);
+        if(dragged) update();
+    }
+
     /**
      * checks if some of buttons in menu is pressed
      * if so then performs some action related to that pressed button.
@@ -138,35 +159,79 @@ public class PCACoordinateSystem extends CoordinateSystem {
     }
 
     /**
-     * Calculates covariance matrix and its eigenvectors.
-     * Removes all buttons in side menu related with projected samples and clear an old list of projected samples.
+     * Calculates covariance matrix (from moments of samples) and its eigenvectors.
+     * Removes buttons in side menu of projections of removed samples and adds buttons for new samples,
+     * projections of other samples are reused.
      * Projects samples onto the eigenvector which has a bigger eigenvalue (TODO add 2D projection)
-     * Adds all buttons corresponding to the new projected samples.
-     * projected samples are created every time when simulation is changed because there is no connection
-     * between sample and its projection.
      */
     @Override
-    public void update() {
-        covarianceMatrix.setValues(MathUtils.covarianceMatrix(samples));
-
-        for(Sample sample: projected) {
-            menu.removeSampleLabel(sample);
+    void updateSimulation() {
+        covarianceMatrix.setValues(MathUtils.covarianceMatrix(moments));
+
+        // removed samples don't belong to the simulation anymore
+        Iterator<Map.Entry<Sample, Sample>> iterator = projectedOf.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<Sample, Sample> entry = iterator.next();
+            if(entry.getKey().getSimulation() != this) {
+                menu.removeSampleLabel(entry.getValue());
+                projectionOf.remove(entry.getKey());
+                iterator.remove();
+            }
         }
 
         projected.clear();
         projections.clear();
+        for(Sample sample: samples) {
+            Sample projectedSample = projectedOf.get(sample);
+            if(projectedSample == null) {
+                projectedSample = new Sample(0, 0);
+                projectedOf.put(sample, projectedSample);
+                projectionOf.put(sample, new Projection(sample, 1, 0));
+                menu.addSampleLabel(projectedSample, STANDARD_BUTTON_HEIGHT, false);
+            }
+            projectedSample.setColor(DrawUtils.withAlpha(sample.getColor(), 130));
+            projected.add(projectedSample);
+            projections.add(projectionOf.get(sample));
+        }
+        projectAll();
+    }
 
-        // choose eigenvector which has bigger eigenvalue
-        List<Double> projection = covarianceMatrix.greaterEigenvector();
-
-        for(Sample s: samples) {
-            double projected_x = MathUtils.dotProd(s.values(), projection);
-            Sample newSample = new Sample(projected_x, 0,
-                    new Color(s.getColor().getRed(), s.getColor().getGreen(), s.getColor().getBlue(), 130));
-            projected.add(newSample);
-            menu.addSampleLabel(newSample, STANDARD_BUTTON_HEIGHT, false);
+    /**
+     * Updates the covariance matrix after the move of {@code movingSample} in O(1) (from moments).
+     * Only the projection of the moved sample is computed again, unless the eigenvector has turned so much that
+     * some projection would be more than {@code MAX_PROJECTION_ERROR} pixels away from its exact place,
+     * then all samples are projected again.
+     */
+    private void updateMovedSample() {
+        covarianceMatrix.setValues(MathUtils.covarianceMatrix(moments));
+        double[] eigenvector = covarianceMatrix.greaterEigenvector();
+        maxNorm = Math.max(maxNorm, Math.hypot(movingSample.getX(), movingSample.getY()));
+
+        // both the projected sample and the end of the section move by at most 2*|sample|*|change of eigenvector|
+        double change = Math.hypot(eigenvector[0] - projectionX, eigenvector[1] - projectionY);
+        if(2*maxNorm*change*scale > MAX_PROJECTION_ERROR) {
+            projectAll();
+        } else {
+            project(movingSample);
+        }
+    }
 
-            projections.add(new Projection(s, covarianceMatrix.slopeOfGreaterEigenvector(), 0));
+    /**
+     * Projects all samples onto the current eigenvector with the greater eigenvalue.
+     */
+    private void projectAll() {
+        double[] eigenvector = covarianceMatrix.greaterEigenvector();
+        projectionX = eigenvector[0];
+        projectionY = eigenvector[1];
+        maxNorm = 0;
+        for(Sample sample: samples) {
+            project(sample);
+            maxNorm = Math.max(maxNorm, Math.hypot(sample.getX(), sample.getY()));
         }
     }
+
+    private void project(Sample sample) {
+        projectedOf.get(sample).instantMove(sample.getX()*projectionX + sample.getY()*projectionY, 0);
+        projectionOf.get(sample).update(sample, projectionY / projectionX, 0);
+    }
 }
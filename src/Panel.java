@@ -1,15 +1,19 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 
 /**
  * Class (with only one instance) that has a loop function for updating and drawing the whole program.
  * This class also supports all kind of mouse and keyboard events and passes them to more specific classes.
  * It manages menus and simulations changes using MenuScenarios.
+ * By default frames are drawn by the Swing timer into the image which is then copied onto the screen.
+ * With {@code -Dmv.activeRendering=true} a separate thread (RenderLoop) draws frames straight into
+ * the back buffer of the window with target frame rate {@code -Dmv.fps} (60 by default).
  */
 public class Panel extends JPanel implements ActionListener, MouseWheelListener, KeyListener, MouseListener, MouseMotionListener {
-    private Image context;
+    private BufferedImage context;
     private Graphics2D g2;
     // dimensions of the program window
     private int width;
@@ -19,6 +23,15 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
     int prevMouseX= -1;
     int prevMouseY= -1;
     Window window;
+    // frame clock, stopped whenever there is nothing new to draw
+    private Timer timer;
+    // true if something has changed since the last frame and the scene has to be drawn again
+    private volatile boolean dirty = true;
+    // thread that draws frames in the active rendering mode, null in the default mode
+    private RenderLoop renderLoop;
+    // in the active rendering mode frames are drawn by another thread than input events are handled,
+    // so both of them lock the scene
+    private final Object sceneLock = new Object();
 
     public Panel(Window win) {
         this.window = win;
@@ -37,11 +50,7 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
         addMouseListener(this);
         addMouseMotionListener(this);
 
-        g2 = (Graphics2D) context.getGraphics();
-
-        // antialiasing for better graphics quality
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                RenderingHints.VALUE_ANTIALIAS_ON);
+        g2 = DrawUtils.prepareGraphics(context);
 
         // initializes important pointers in static classes
         DrawUtils.setGraphicsContext(g2);
@@ -52,9 +61,35 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
         // program starts with main menu
         changeGraphics("", "Menu");
 
-        // timer to frames changes
-        Timer t = new Timer(15, this);
-        t.start();
+        if(Boolean.getBoolean("mv.activeRendering")) {
+            // Swing doesn't paint anything, frames are drawn only by the render loop
+            window.setIgnoreRepaint(true);
+            setIgnoreRepaint(true);
+            window.createBufferStrategy(2);
+            renderLoop = new RenderLoop(this, window.getBufferStrategy(), Integer.getInteger("mv.fps", 60));
+            renderLoop.start();
+            return;
+        }
+
+        // timer to frames changes, runs only while the scene is dirty
+        timer = new Timer(15, this);
+        timer.setInitialDelay(0);
+        requestRedraw();
+    }
+
+    /**
+     * Marks the scene as changed. The next tick of the timer draws it again.
+     * Every input handler calls this method, simulations call it as well when
+     * they animate something (e.g. AutoMotion or blinking shapes in tutorials).
+     * If timer was stopped because nothing has changed for a while, it is started again.
+     */
+    void requestRedraw() {
+        dirty = true;
+        if(renderLoop != null) {
+            renderLoop.wakeUp();
+        } else if(timer != null && !timer.isRunning()) {
+            timer.start();
+        }
     }
 
     /**
@@ -75,45 +110,115 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
         } else if(title.equals(StringsResources.linearAlgebra())) {
             graphics = MenuScenarios.LinearAlgebraMenuOptions(buttonLabel);
         }
+        requestRedraw();
     }
 
     /**
-     * Draws black rectangle over the entire screen and performs draw method for graphics which
-     * can be either a menu or a simulation.
+     * If the scene is dirty draws black rectangle over the entire screen and performs draw method for graphics which
+     * can be either a menu or a simulation. Then copies the frame onto the screen.
+     * When nothing has changed (e.g. Swing asks for repainting after the window was covered)
+     * the previous frame is copied without drawing the scene again.
      * @param g - graphics engine
      */
     public void paintComponent(Graphics g) {
-        if(window.getSize().width != width || window.getSize().height != height) {
-            width = window.getSize().width;
-            height = window.getSize().height;
-            context = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            g2 = (Graphics2D) context.getGraphics();
+        if(renderLoop != null) {
+            return;
+        }
 
-            // antialiasing for better graphics quality
-            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON);
+        synchronized (sceneLock) {
+            checkWindowSize();
 
-            DrawUtils.setGraphicsContext(g2);
-            changeGraphics("", "Menu");
+            if (g2 != null && dirty) {
+                // cleared before drawing, so animations can ask for the next frame inside graphics.draw()
+                dirty = false;
+                drawScene(g2);
+            }
         }
 
         g.drawImage(context, 0, 0, null);
+    }
+
+    /**
+     * Draws one frame straight into the back buffer of the window and shows it. Used by the render loop.
+     * The image context stays the graphics engine of DrawUtils between frames
+     * because menus and simulations measure strings while they are created.
+     * Frame is drawn again if the content of the buffer was lost in the meantime.
+     * @param strategy - buffer strategy of the window
+     */
+    void drawActiveFrame(BufferStrategy strategy) {
+        // panel may be shifted inside the window
+        Point origin = SwingUtilities.convertPoint(this, 0, 0, window);
+        do {
+            do {
+                Graphics2D frame = (Graphics2D) strategy.getDrawGraphics();
+                frame.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                frame.translate(origin.x, origin.y);
+
+                synchronized (sceneLock) {
+                    checkWindowSize();
+                    dirty = false;
+                    DrawUtils.setGraphicsContext(frame);
+                    drawScene(frame);
+                    DrawUtils.setGraphicsContext(g2);
+                }
+                frame.dispose();
+            } while(strategy.contentsRestored());
+            strategy.show();
+        } while(strategy.contentsLost());
+
+        Toolkit.getDefaultToolkit().sync();
+    }
 
-        if (g2 != null) {
-            g2.setColor(DrawUtils.background);
-            g2.fillRect(0,0, width, height);
+    /**
+     * @return true if something has changed since the last frame
+     */
+    boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Draws background over the entire screen and performs draw method for graphics which
+     * can be either a menu or a simulation.
+     * @param target - graphics engine of the current frame
+     */
+    private void drawScene(Graphics2D target) {
+        long start = FrameProfiler.start();
+        target.setColor(DrawUtils.background);
+        target.fillRect(0,0, width, height);
+
+        graphics.draw();
+        FrameProfiler.record(FrameProfiler.Phase.FRAME, start);
+    }
 
-            graphics.draw();
+    /**
+     * If the size of the window was changed creates new image context and goes back to the main menu
+     * since all menus and simulations depend on the size of the screen.
+     */
+    private void checkWindowSize() {
+        if(window.getSize().width != width || window.getSize().height != height) {
+            width = window.getSize().width;
+            height = window.getSize().height;
+            context = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            g2 = DrawUtils.prepareGraphics(context);
+
+            DrawUtils.setGraphicsContext(g2);
+            changeGraphics("", "Menu");
         }
     }
 
     /**
      * performs this.paintComponent() whenever timer starts an event (every 15 milliseconds)
+     * but only if something has changed since the last frame. Otherwise the timer is stopped
+     * until {@code requestRedraw} is called, so the idle program doesn't use the processor.
      * @param e - action event (not used)
      */
     @Override
     public void actionPerformed(ActionEvent e) {
-        repaint();
+        if(dirty) {
+            repaint();
+        } else {
+            timer.stop();
+        }
     }
 
     /**
@@ -122,7 +227,10 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
      */
     @Override
     public void mouseWheelMoved(MouseWheelEvent e) {
-        graphics.onMouseScrolled(e.getWheelRotation());
+        synchronized (sceneLock) {
+            graphics.onMouseScrolled(e.getWheelRotation());
+        }
+        requestRedraw();
     }
 
     /**
@@ -138,7 +246,10 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
      */
     @Override
     public void keyPressed(KeyEvent e) {
-        graphics.onKeyPressed(e);
+        synchronized (sceneLock) {
+            graphics.onKeyPressed(e);
+        }
+        requestRedraw();
     }
 
     /**
@@ -163,11 +274,16 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
     public void mousePressed(MouseEvent me) {
         final int LEFT = 1;
         final int RIGHT = 3;
-        if(me.getButton() == LEFT) {
-            graphics.onLeftClick(me.getX(), me.getY());
-        } else if(me.getButton() == RIGHT) {
-            graphics.onRightClick(me.getX(), me.getY());
+        synchronized (sceneLock) {
+            if(me.getButton() == LEFT) {
+                graphics.onLeftClick(me.getX(), me.getY());
+            } else if(me.getButton() == RIGHT) {
+                long start = FrameProfiler.start();
+                graphics.onRightClick(me.getX(), me.getY());
+                FrameProfiler.record(FrameProfiler.Phase.RIGHT_CLICK, start);
+            }
         }
+        requestRedraw();
     }
 
     /**
@@ -178,8 +294,11 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
     public void mouseReleased(MouseEvent me) {
         final int LEFT = 1;
         if(me.getButton() == LEFT) {
-            graphics.onLeftMouseButtonReleased(me.getX(), me.getY());
+            synchronized (sceneLock) {
+                graphics.onLeftMouseButtonReleased(me.getX(), me.getY());
+            }
         }
+        requestRedraw();
     }
 
     /**
@@ -214,9 +333,14 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
             return;
         }
 
-        graphics.onMouseDragged(me.getX(), me.getY(), prevMouseX, prevMouseY);
+        synchronized (sceneLock) {
+            long start = FrameProfiler.start();
+            graphics.onMouseDragged(me.getX(), me.getY(), prevMouseX, prevMouseY);
+            FrameProfiler.record(FrameProfiler.Phase.DRAG, start);
+        }
         prevMouseX = me.getX();
         prevMouseY = me.getY();
+        requestRedraw();
     }
 
     /**
@@ -225,11 +349,14 @@ public class Panel extends JPanel implements ActionListener, MouseWheelListener,
      */
     @Override
     public void mouseMoved(MouseEvent me) {
-        if(graphics != null) {
-            graphics.onMouseMoved(me.getX(), me.getY(), prevMouseX, prevMouseY);
+        synchronized (sceneLock) {
+            if(graphics != null) {
+                graphics.onMouseMoved(me.getX(), me.getY(), prevMouseX, prevMouseY);
+            }
         }
         prevMouseX = me.getX();
         prevMouseY = me.getY();
+        requestRedraw();
     }
 
     public int getWidth() {
@@ -1,6 +1,4 @@
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.Arrays;
 
 /**
  * Basic point class in 2D space. Can be moved.
@@ -36,7 +34,6 @@ class Point2D {
     double getX() { return x; }
     double getY() { return y; }
 
-    ArrayList<Double> values() { return new ArrayList<>(Arrays.asList(x, y)); }
 }
 
 /**
@@ -51,11 +48,20 @@ class Sample extends Point2D {
     private boolean isMoving, selected;
     // used in prediction algorithms
     private int category;
+    // value predicted by the KNN regression, the number of the class unless it was set on load
+    private double value;
+    // spatial index which contains the sample or null
+    private SampleIndex index;
+    // simulation whose sample it is or null (e.g. projections of samples)
+    private CoordinateSystem simulation;
+    // number of the sample in the order of adding to the simulation (samples added earlier are drawn on top)
+    private long order;
 
     Sample(double x, double y) {
         super(x,y);
         isMoving = false;
         category = 1;
+        value = 1;
     }
 
     Sample(double x, double y, Color col) {
@@ -64,6 +70,7 @@ class Sample extends Point2D {
         isMoving = false;
         selected = false;
         category = 1;
+        value = 1;
     }
 
     Sample(double x, double y, int cat) {
@@ -72,6 +79,7 @@ class Sample extends Point2D {
         isMoving = false;
         selected = false;
         category = cat;
+        value = cat;
     }
 
     /**
@@ -93,11 +101,52 @@ class Sample extends Point2D {
 
         if(selected) {
             DrawUtils.g2.setColor(DrawUtils.orange);
-            DrawUtils.g2.setStroke(new BasicStroke(2));
+            DrawUtils.g2.setStroke(DrawUtils.stroke(2));
             DrawUtils.ring(screenX, screenY, radius*scale*1.7);
         }
     }
 
+    /**
+     * moves the sample by the vector [dx, dy] and tells its spatial index and its simulation about that
+     * @param dx - difference of x
+     * @param dy - difference of y
+     */
+    @Override
+    void move(double dx, double dy) {
+        double oldX = x, oldY = y;
+        super.move(dx, dy);
+        if(index != null) index.moved(this, oldX, oldY);
+        if(simulation != null) simulation.sampleMoved(this, oldX, oldY);
+    }
+
+    /**
+     * moves the sample to the specific place and tells its spatial index and its simulation about that
+     * @param new_x - new x of the sample
+     * @param new_y - new y of the sample
+     */
+    @Override
+    void instantMove(double new_x, double new_y) {
+        double oldX = x, oldY = y;
+        super.instantMove(new_x, new_y);
+        if(index != null) index.moved(this, oldX, oldY);
+        if(simulation != null) simulation.sampleMoved(this, oldX, oldY);
+    }
+
+    void setIndex(SampleIndex index) { this.index = index; }
+
+    /**
+     * @param simulation - simulation which the sample was added to or null when it was removed
+     * @param order - number of the sample in the order of adding to the simulation
+     */
+    void setSimulation(CoordinateSystem simulation, long order) {
+        this.simulation = simulation;
+        this.order = order;
+    }
+
+    CoordinateSystem getSimulation() { return simulation; }
+
+    long getOrder() { return order; }
+
     /**
      * checks whether the point (px, py) is inside the circle that represents the sample.
      * @param px - x coordinate of point
@@ -126,9 +175,27 @@ class Sample extends Point2D {
 
     int category() { return category; }
 
-    void setCategory(int value) { category = value; }
+    /**
+     * changes the class of the sample, its value becomes the number of the new class
+     * @param value - new class (0 means neutral)
+     */
+    void setCategory(int value) {
+        category = value;
+        this.value = value;
+    }
+
+    double getValue() { return value; }
+
+    void setValue(double value) { this.value = value; }
 
     public void select(boolean value) {
         selected = value;
     }
+
+    boolean isSelected() { return selected; }
+
+    /**
+     * @return radius of every sample (in cartesian plane units)
+     */
+    static double radius() { return radius; }
 }
\ No newline at end of file
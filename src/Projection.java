@@ -27,6 +27,10 @@ public class Projection {
         double projectionX = (perpendicularB - b) / (a - perpendicularA);
         double projectionY = a*projectionX + b;
 
-        projection = new Point2D(projectionX, projectionY);
+        if(projection == null) {
+            projection = new Point2D(projectionX, projectionY);
+        } else {
+            projection.instantMove(projectionX, projectionY);
+        }
     }
 }
@@ -0,0 +1,72 @@
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread used in the active rendering mode. Draws frames straight into the back buffer of the window
+ * (page flipping or accelerated image, whichever the buffer strategy has chosen), so there is no copy of
+ * the whole frame and what is shown is never one frame old.
+ * Frames are paced with {@code System.nanoTime} to the target frame rate and drawn only if the scene
+ * has changed. When nothing changes the thread sleeps until {@code wakeUp} is called.
+ */
+class RenderLoop implements Runnable {
+    // even if nothing has changed the buffer is checked from time to time because its content can be lost
+    private static final long IDLE_CHECK_NANOS = 250_000_000L;
+    private final Panel panel;
+    private final BufferStrategy strategy;
+    // time of one frame with the target frame rate
+    private final long frameNanos;
+    private Thread thread;
+    private volatile boolean running;
+
+    RenderLoop(Panel panel, BufferStrategy strategy, int targetFps) {
+        this.panel = panel;
+        this.strategy = strategy;
+        frameNanos = 1_000_000_000L / Math.max(1, targetFps);
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "render-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wakes the thread up if it is sleeping because nothing has changed.
+     * Can be called from any thread.
+     */
+    void wakeUp() {
+        if(thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Draws a frame whenever the scene is dirty (or the buffer was lost) and then waits for the time
+     * of the next frame. If drawing took longer than one frame the next frame starts immediately
+     * and the lost time is not caught up.
+     */
+    @Override
+    public void run() {
+        long nextFrame = System.nanoTime();
+
+        while(running) {
+            if(panel.isDirty() || strategy.contentsLost()) {
+                panel.drawActiveFrame(strategy);
+
+                nextFrame += frameNanos;
+                if(nextFrame < System.nanoTime()) {
+                    nextFrame = System.nanoTime();
+                }
+                // wakeUp can end parking earlier, so it parks again until the time of the next frame
+                long remaining;
+                while((remaining = nextFrame - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            } else {
+                LockSupport.parkNanos(IDLE_CHECK_NANOS);
+                nextFrame = Math.max(nextFrame, System.nanoTime());
+            }
+        }
+    }
+}
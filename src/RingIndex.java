@@ -0,0 +1,169 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Uniform grid over bounding boxes of rings of KNN interfaces. Every interface is kept in all cells
+ * which its ring overlaps, so finding rings which contain a point checks only interfaces from the cell of the point
+ * instead of all neutral samples. Rings which would cover too many cells are kept in one list checked by every query.
+ * Size of cells is chosen from sizes of rings when the grid is built. Interfaces added to the grid report
+ * their changes to it by themselves (see {@code KNNInterface.set}).
+ */
+class RingIndex {
+    // rings which overlap more cells are not put into cells
+    private static final int MAX_CELLS_PER_RING = 64;
+
+    // cells which the ring overlaps (inclusive ranges of columns and rows) or large == true
+    private static class Entry {
+        long fromColumn, toColumn, fromRow, toRow;
+        boolean large;
+        // number of the last query which found the interface, so it is found only once
+        int query;
+    }
+
+    private final HashMap<Long, ArrayList<KNNInterface>> cells = new HashMap<>();
+    private final HashMap<KNNInterface, Entry> entries = new HashMap<>();
+    private final ArrayList<KNNInterface> large = new ArrayList<>();
+    private double cellSize = 1;
+    private int query;
+
+    private static long key(long column, long row) {
+        return (column << 32) ^ (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Removes all interfaces, they stop reporting their changes (e.g. before they are set again by many threads).
+     */
+    void clear() {
+        for(KNNInterface inter: entries.keySet()) {
+            inter.setIndex(null);
+        }
+        entries.clear();
+        cells.clear();
+        large.clear();
+    }
+
+    /**
+     * Puts all interfaces into a new grid with cells about as big as their rings.
+     * @param interfaces - interfaces of neutral samples (already set)
+     */
+    void build(List<KNNInterface> interfaces) {
+        clear();
+        double sizes = 0;
+        for(int i = 0; i < interfaces.size(); i++) {
+            KNNInterface inter = interfaces.get(i);
+            sizes += 2*Math.max(inter.halfWidth(), inter.halfHeight());
+        }
+        cellSize = sizes > 0 && !Double.isInfinite(sizes) ? sizes / interfaces.size() : 1;
+
+        for(int i = 0; i < interfaces.size(); i++) {
+            KNNInterface inter = interfaces.get(i);
+            Entry entry = new Entry();
+            entries.put(inter, entry);
+            insert(inter, entry);
+            inter.setIndex(this);
+        }
+    }
+
+    /**
+     * Moves the interface to the right cells. Called by the interface after its ring has changed.
+     * @param inter - changed interface
+     */
+    void changed(KNNInterface inter) {
+        Entry entry = entries.get(inter);
+        if(entry == null) return;
+
+        double x = inter.predicted.getX(), y = inter.predicted.getY();
+        double halfWidth = inter.halfWidth(), halfHeight = inter.halfHeight();
+        // small changes of rings usually don't change their cells, then nothing has to be done
+        if(!entry.large && entry.fromColumn == (long)Math.floor((x - halfWidth) / cellSize)
+                && entry.toColumn == (long)Math.floor((x + halfWidth) / cellSize)
+                && entry.fromRow == (long)Math.floor((y - halfHeight) / cellSize)
+                && entry.toRow == (long)Math.floor((y + halfHeight) / cellSize)) {
+            return;
+        }
+
+        remove(inter, entry);
+        insert(inter, entry);
+    }
+
+    private void insert(KNNInterface inter, Entry entry) {
+        double x = inter.predicted.getX(), y = inter.predicted.getY();
+        double halfWidth = inter.halfWidth(), halfHeight = inter.halfHeight();
+        entry.fromColumn = (long)Math.floor((x - halfWidth) / cellSize);
+        entry.toColumn = (long)Math.floor((x + halfWidth) / cellSize);
+        entry.fromRow = (long)Math.floor((y - halfHeight) / cellSize);
+        entry.toRow = (long)Math.floor((y + halfHeight) / cellSize);
+
+        double cellCount = (double)(entry.toColumn - entry.fromColumn + 1)*(entry.toRow - entry.fromRow + 1);
+        entry.large = !(cellCount <= MAX_CELLS_PER_RING);
+        if(entry.large) {
+            large.add(inter);
+            return;
+        }
+        for(long column = entry.fromColumn; column <= entry.toColumn; column++) {
+            for(long row = entry.fromRow; row <= entry.toRow; row++) {
+                cells.computeIfAbsent(key(column, row), k -> new ArrayList<>()).add(inter);
+            }
+        }
+    }
+
+    private void remove(KNNInterface inter, Entry entry) {
+        if(entry.large) {
+            removeFrom(large, inter);
+            return;
+        }
+        for(long column = entry.fromColumn; column <= entry.toColumn; column++) {
+            for(long row = entry.fromRow; row <= entry.toRow; row++) {
+                // empty cells are kept until the grid is built again, so dragging doesn't create new lists
+                ArrayList<KNNInterface> cell = cells.get(key(column, row));
+                if(cell != null) removeFrom(cell, inter);
+            }
+        }
+    }
+
+    private static void removeFrom(ArrayList<KNNInterface> list, KNNInterface inter) {
+        for(int i = 0; i < list.size(); i++) {
+            if(list.get(i) == inter) {
+                // order doesn't matter
+                list.set(i, list.get(list.size()-1));
+                list.remove(list.size()-1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds neutral samples whose rings contain at least one of two points (every sample once).
+     * @param x1 - x coordinate of the first point
+     * @param y1 - y coordinate of the first point
+     * @param x2 - x coordinate of the second point
+     * @param y2 - y coordinate of the second point
+     * @param found - receives neutral samples of found interfaces
+     */
+    void samplesReaching(double x1, double y1, double x2, double y2, List<Sample> found) {
+        query++;
+        check(large, x1, y1, x2, y2, found);
+        long column1 = (long)Math.floor(x1 / cellSize), row1 = (long)Math.floor(y1 / cellSize);
+        long column2 = (long)Math.floor(x2 / cellSize), row2 = (long)Math.floor(y2 / cellSize);
+        ArrayList<KNNInterface> cell = cells.get(key(column1, row1));
+        if(cell != null) check(cell, x1, y1, x2, y2, found);
+        if(column2 != column1 || row2 != row1) {
+            cell = cells.get(key(column2, row2));
+            if(cell != null) check(cell, x1, y1, x2, y2, found);
+        }
+    }
+
+    private void check(ArrayList<KNNInterface> candidates, double x1, double y1, double x2, double y2, List<Sample> found) {
+        for(int i = 0; i < candidates.size(); i++) {
+            KNNInterface inter = candidates.get(i);
+            Entry entry = entries.get(inter);
+            if(entry.query == query) continue;
+
+            if(inter.reaches(x1, y1) || inter.reaches(x2, y2)) {
+                entry.query = query;
+                found.add(inter.predicted);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Uniform grid over the cartesian plane which remembers in which cells samples are.
+ * Finding samples under the mouse checks only one cell and its neighbours instead of all samples.
+ * Samples added to the index report their moves to it by themselves (see {@code Sample.instantMove}).
+ */
+class SampleIndex {
+    // size of the cell in cartesian plane units, bigger than the diameter of the sample
+    private static final double CELL_SIZE = 0.5;
+    private final HashMap<Long, ArrayList<Sample>> cells = new HashMap<>();
+    // reused by samplesAt, so moving the mouse doesn't create new lists
+    private final ArrayList<Sample> found = new ArrayList<>();
+    private int size = 0;
+
+    /**
+     * @param x - x coordinate in cartesian plane
+     * @param y - y coordinate in cartesian plane
+     * @return key of the cell which contains point (x, y)
+     */
+    private static long key(double x, double y) {
+        long column = (long)Math.floor(x / CELL_SIZE);
+        long row = (long)Math.floor(y / CELL_SIZE);
+        return (column << 32) ^ (row & 0xFFFFFFFFL);
+    }
+
+    void add(Sample sample) {
+        cells.computeIfAbsent(key(sample.getX(), sample.getY()), k -> new ArrayList<>()).add(sample);
+        sample.setIndex(this);
+        size++;
+    }
+
+    void remove(Sample sample) {
+        if(removeFromCell(sample, key(sample.getX(), sample.getY()))) {
+            sample.setIndex(null);
+            size--;
+        }
+    }
+
+    /**
+     * Moves the sample to the right cell. Called by the sample after every change of its position.
+     * @param sample - moved sample
+     * @param oldX - x coordinate of the sample before the move
+     * @param oldY - y coordinate of the sample before the move
+     */
+    void moved(Sample sample, double oldX, double oldY) {
+        long oldKey = key(oldX, oldY);
+        long newKey = key(sample.getX(), sample.getY());
+        if(oldKey != newKey && removeFromCell(sample, oldKey)) {
+            cells.computeIfAbsent(newKey, k -> new ArrayList<>()).add(sample);
+        }
+    }
+
+    private boolean removeFromCell(Sample sample, long key) {
+        ArrayList<Sample> cell = cells.get(key);
+        if(cell == null) return false;
+
+        for(int i = 0; i < cell.size(); i++) {
+            if(cell.get(i) == sample) {
+                // order inside the cell doesn't matter
+                cell.set(i, cell.get(cell.size()-1));
+                cell.remove(cell.size()-1);
+                if(cell.isEmpty()) cells.remove(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds all samples which have the point (x, y) inside.
+     * Returned list is reused by the next call, so it should be copied if it has to be kept.
+     * @param x - x coordinate in cartesian plane
+     * @param y - y coordinate in cartesian plane
+     * @return samples under the point (in any order)
+     */
+    ArrayList<Sample> samplesAt(double x, double y) {
+        found.clear();
+        if(size == 0) return found;
+
+        // sample is smaller than the cell so it can be only in the cell of the point or in the neighbouring ones
+        for(int dx = -1; dx <= 1; dx++) {
+            for(int dy = -1; dy <= 1; dy++) {
+                ArrayList<Sample> cell = cells.get(key(x + dx*CELL_SIZE, y + dy*CELL_SIZE));
+                if(cell == null) continue;
+                for(Sample sample: cell) {
+                    if(sample.hasInside(x, y)) found.add(sample);
+                }
+            }
+        }
+        return found;
+    }
+}
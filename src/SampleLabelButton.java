@@ -42,7 +42,7 @@ class SampleLabelButton extends Button {
 
         // prints labels with input fields
         DrawUtils.g2.setColor(textCol);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
         DrawUtils.drawStringWithLeftAlignment("X:", x+width/5, y+height/2);
         inputForX.draw();
         DrawUtils.g2.setColor(textCol);
@@ -55,8 +55,10 @@ class SampleLabelButton extends Button {
      * IT changes the colors of input fields as well
      * @param mouseX - x coordinate in CartesianPlane pointed by the mouse (not real mouse x position)
      * @param mouseY - y coordinate in CartesianPlane pointed by the mouse (not real mouse y position)
+     * @return true if colors of the button have changed
      */
-    public void hoverFromSample(double mouseX, double mouseY) {
+    public boolean hoverFromSample(double mouseX, double mouseY) {
+        Color previousBackground = backgroundCol;
         if(sample.hasInside(mouseX, mouseY)) {
             backgroundCol = DrawUtils.primaryColor;
             textCol = DrawUtils.secondaryColor;
@@ -66,6 +68,7 @@ class SampleLabelButton extends Button {
         }
         inputForX.setColors(textCol, backgroundCol);
         inputForY.setColors(textCol, backgroundCol);
+        return previousBackground != backgroundCol;
     }
 
     /**
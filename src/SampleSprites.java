@@ -0,0 +1,214 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws many samples at once. Every different look of a sample (color, predicted color and radius in pixels)
+ * is drawn with antialiasing only once to a small image (sprite). Then the sprite is copied pixel by pixel
+ * to a transparent scratch image of the size of the screen for every sample with this look, and the scratch image
+ * is drawn with {@code drawImage} once. Images of layers and the window are never written directly,
+ * so Java2D can still accelerate them, and the clip and the composite of DrawUtils.g2 are respected.
+ * The order of samples (reverse) and selection rings are the same as in {@code Sample.draw}.
+ */
+class SampleSprites {
+    // below that number of samples drawing them one by one is fast enough
+    static final int THRESHOLD = 2000;
+    // sprites are created again when there are too many of them (e.g. after many changes of the scale)
+    private static final int MAX_SPRITES = 64;
+    private static final ArrayList<Sprite> sprites = new ArrayList<>();
+    // transparent image which sprites are copied to, and the rectangle [left, right) x [top, bottom) changed since
+    // it was drawn last time (only this part is drawn and cleared)
+    private static BufferedImage scratch;
+    private static int[] scratchPixels;
+    private static int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+
+    /**
+     * Premultiplied pixels of one look of the sample.
+     */
+    private static class Sprite {
+        final int color, predictedColor, diameter;
+        final int[] pixels;
+        // opaque pixels of every row form one span [opaqueStart, opaqueEnd) which is copied without blending
+        final int[] opaqueStart, opaqueEnd;
+
+        Sprite(int color, int predictedColor, int diameter, Color col, Color predicted) {
+            this.color = color;
+            this.predictedColor = predictedColor;
+            this.diameter = diameter;
+
+            // one pixel of margin for antialiasing
+            BufferedImage image = new BufferedImage(diameter + 2, diameter + 2, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D graphics = DrawUtils.prepareGraphics(image);
+            graphics.setColor(col);
+            graphics.fillOval(1, 1, diameter, diameter);
+            if(predicted != null) {
+                graphics.setColor(predicted);
+                int inner = (int)(diameter/2.0);
+                graphics.fillOval(1 + (diameter - inner)/2, 1 + (diameter - inner)/2, inner, inner);
+            }
+            graphics.dispose();
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+            int size = diameter + 2;
+            opaqueStart = new int[size];
+            opaqueEnd = new int[size];
+            for(int y = 0; y < size; y++) {
+                int x = 0;
+                while(x < size && pixels[y*size + x] >>> 24 != 255) x++;
+                opaqueStart[y] = x;
+                while(x < size && pixels[y*size + x] >>> 24 == 255) x++;
+                opaqueEnd[y] = x;
+            }
+        }
+    }
+
+    /**
+     * Draws samples in reverse order (like {@code CoordinateSystem.drawSamples}). Samples outside the screen are skipped.
+     * @param samples - samples to be drawn
+     * @param plane - coordinate system in which samples are drawn
+     */
+    static void draw(List<Sample> samples, CoordinateSystem plane) {
+        Point2D camera = plane.camera;
+        double scale = plane.scale;
+        double margin = Sample.radius()*1.7;
+        double r = Sample.radius()*scale;
+        int diameter = (int)(2*r);
+        if(diameter < 1) return;
+
+        prepareScratch(plane.width, plane.height);
+
+        for(int i = samples.size()-1; i >= 0; i--) {
+            Sample sample = samples.get(i);
+            if(!plane.isVisible(sample.x, sample.y, margin)) continue;
+            double screenX = (sample.x - camera.x)*scale;
+            double screenY = -(sample.y - camera.y)*scale;
+            Sprite sprite = sprite(sample, diameter);
+            // the same corner as in DrawUtils.circle, minus the margin
+            int left = (int)(screenX - r) - 1;
+            int top = (int)(screenY - r) - 1;
+
+            stamp(sprite, left, top);
+
+            if(sample.isSelected()) {
+                // the ring is over the sample but under samples drawn after it
+                flush();
+                DrawUtils.g2.setColor(DrawUtils.orange);
+                DrawUtils.g2.setStroke(DrawUtils.stroke(2));
+                DrawUtils.ring(screenX, screenY, r*1.7);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Creates the scratch image if the size of the screen has changed and marks it as clean.
+     */
+    private static void prepareScratch(int width, int height) {
+        if(scratch == null || scratch.getWidth() != width || scratch.getHeight() != height) {
+            scratch = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB_PRE);
+            scratchPixels = ((DataBufferInt)scratch.getRaster().getDataBuffer()).getData();
+        }
+        dirtyLeft = scratch.getWidth();
+        dirtyTop = scratch.getHeight();
+        dirtyRight = dirtyBottom = 0;
+    }
+
+    /**
+     * Draws the changed part of the scratch image with DrawUtils.g2 and clears it.
+     */
+    private static void flush() {
+        if(dirtyLeft >= dirtyRight || dirtyTop >= dirtyBottom) return;
+
+        DrawUtils.g2.drawImage(scratch, dirtyLeft, dirtyTop, dirtyRight, dirtyBottom,
+                dirtyLeft, dirtyTop, dirtyRight, dirtyBottom, null);
+        int width = scratch.getWidth();
+        for(int y = dirtyTop; y < dirtyBottom; y++) {
+            Arrays.fill(scratchPixels, y*width + dirtyLeft, y*width + dirtyRight, 0);
+        }
+        dirtyLeft = width;
+        dirtyTop = scratch.getHeight();
+        dirtyRight = dirtyBottom = 0;
+    }
+
+    /**
+     * Finds the sprite of the sample and creates it if it doesn't exist yet.
+     * @param sample - drawn sample
+     * @param diameter - diameter of the sample in pixels
+     * @return sprite of the sample
+     */
+    private static Sprite sprite(Sample sample, int diameter) {
+        int color = sample.getColor().getRGB();
+        // only neutral samples show the predicted class
+        int predicted = sample.category() == 0 ? sample.getPredictedColor().getRGB() : 0;
+
+        for(int i = sprites.size()-1; i >= 0; i--) {
+            Sprite sprite = sprites.get(i);
+            if(sprite.color == color && sprite.predictedColor == predicted && sprite.diameter == diameter) {
+                return sprite;
+            }
+        }
+
+        if(sprites.size() >= MAX_SPRITES) {
+            sprites.clear();
+        }
+        Sprite sprite = new Sprite(color, predicted, diameter, sample.getColor(),
+                sample.category() == 0 ? sample.getPredictedColor() : null);
+        sprites.add(sprite);
+        return sprite;
+    }
+
+    /**
+     * Blends the sprite over the pixels of the scratch image (source over). Parts outside the image are skipped.
+     * @param sprite - drawn sprite
+     * @param left - x of the left top corner of the sprite
+     * @param top - y of the left top corner of the sprite
+     */
+    private static void stamp(Sprite sprite, int left, int top) {
+        int[] target = scratchPixels;
+        int width = scratch.getWidth(), height = scratch.getHeight();
+        int size = sprite.diameter + 2;
+        int fromX = Math.max(0, -left), toX = Math.min(size, width - left);
+        int fromY = Math.max(0, -top), toY = Math.min(size, height - top);
+        if(fromX >= toX || fromY >= toY) return;
+
+        dirtyLeft = Math.min(dirtyLeft, left + fromX);
+        dirtyRight = Math.max(dirtyRight, left + toX);
+        dirtyTop = Math.min(dirtyTop, top + fromY);
+        dirtyBottom = Math.max(dirtyBottom, top + toY);
+
+        for(int sy = fromY; sy < toY; sy++) {
+            int spriteRow = sy*size;
+            int targetRow = (top + sy)*width + left;
+            int spanFrom = Math.max(fromX, sprite.opaqueStart[sy]);
+            int spanTo = Math.min(toX, sprite.opaqueEnd[sy]);
+            if(spanFrom < spanTo) {
+                System.arraycopy(sprite.pixels, spriteRow + spanFrom, target, targetRow + spanFrom, spanTo - spanFrom);
+            }
+
+            for(int sx = fromX; sx < toX; sx++) {
+                if(sx == spanFrom && spanFrom < spanTo) {
+                    sx = spanTo - 1;
+                    continue;
+                }
+                int src = sprite.pixels[spriteRow + sx];
+                int alpha = src >>> 24;
+                if(alpha == 0) continue;
+                if(alpha == 255) {
+                    target[targetRow + sx] = src;
+                    continue;
+                }
+
+                int dst = target[targetRow + sx];
+                int inverse = 255 - alpha;
+                int red = ((src >> 16) & 255) + (((dst >> 16) & 255)*inverse + 127)/255;
+                int green = ((src >> 8) & 255) + (((dst >> 8) & 255)*inverse + 127)/255;
+                int blue = (src & 255) + ((dst & 255)*inverse + 127)/255;
+                int resultAlpha = alpha + ((dst >>> 24)*inverse + 127)/255;
+                target[targetRow + sx] = resultAlpha << 24 | red << 16 | green << 8 | blue;
+            }
+        }
+    }
+}
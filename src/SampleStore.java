@@ -0,0 +1,86 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coordinates and classes of samples of the simulation kept in primitive parallel arrays (struct of arrays).
+ * Algorithms run on these contiguous arrays instead of lists of boxed numbers. Arrays grow twice when they are full,
+ * so adding is amortised O(1) and syncing the same number of samples again doesn't allocate anything.
+ * Sample objects are still used for the interaction (dragging, labels in the menu), the store is an extra copy
+ * of their values (17 bytes per sample) refreshed by {@code sync} when a simulation needs all samples.
+ */
+class SampleStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] xs = new double[INITIAL_CAPACITY], ys = new double[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Copies values of samples (in their order), the i-th sample of the list is the i-th sample of the store.
+     * @param samples - samples of the simulation
+     */
+    void sync(List<Sample> samples) {
+        size = 0;
+        ensureCapacity(samples.size());
+        for(int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+            add(sample.getX(), sample.getY(), sample.category());
+        }
+    }
+
+    /**
+     * @param x - x coordinate of the sample
+     * @param y - y coordinate of the sample
+     * @param category - class of the sample
+     */
+    void add(double x, double y, int category) {
+        ensureCapacity(size + 1);
+        xs[size] = x;
+        ys[size] = y;
+        categories[size] = (byte) category;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity <= xs.length) return;
+
+        int newCapacity = Math.max(capacity, xs.length*2);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    double x(int i) {
+        return xs[i];
+    }
+
+    double y(int i) {
+        return ys[i];
+    }
+
+    int category(int i) {
+        return categories[i];
+    }
+
+    /**
+     * @return x coordinates of samples (only the first {@code size()} values are samples, don't change them)
+     */
+    double[] xs() {
+        return xs;
+    }
+
+    /**
+     * @return y coordinates of samples (only the first {@code size()} values are samples, don't change them)
+     */
+    double[] ys() {
+        return ys;
+    }
+}
@@ -12,11 +12,21 @@ interface Shape {
  * Used in interfaces inside the coordinate systems visualizations ( such as KNNInterface)
  */
 class Stretch implements Shape {
-    private final Point2D A;
-    private final Point2D B;
-    private final Color color;
+    private Point2D A;
+    private Point2D B;
+    private Color color;
 
     Stretch(Point2D A, Point2D B, Color col) {
+        set(A, B, col);
+    }
+
+    /**
+     * Changes ends and the color of the stretch, so it can be reused instead of creating a new one.
+     * @param A - first end
+     * @param B - second end
+     * @param col - color of the stretch
+     */
+    void set(Point2D A, Point2D B, Color col) {
         this.A = A;
         this.B = B;
         color = col;
@@ -28,9 +38,9 @@ class Stretch implements Shape {
      */
     @Override
     public void draw(CoordinateSystem plane) {
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.setColor(color);
-        DrawUtils.line(plane.screenX(A.x), plane.screenY(A.y), plane.screenX(B.x), plane.screenY(B.y));
+        plane.drawSection(A.x, A.y, B.x, B.y);
     }
 
     /**
@@ -48,27 +58,94 @@ class Stretch implements Shape {
 /**
  * Graphical representation of the ring in coordinate system.
  * Used in interfaces inside the coordinate systems visualizations ( such as KNNInterface)
+ * The ring is the set of points in the distance equal to the radius, so for metrics other than the euclidean one
+ * it's a polygon (a diamond for Manhattan, a square for Chebyshev, an ellipse for the weighted euclidean metric).
  */
 class Ring implements Shape {
-    private final Point2D center;
-    private final double radius;
-    private final Color color;
+    // number of vertices of rings which are not circles, multiple of 8 so corners of diamonds and squares are vertices
+    private static final int VERTICES = 64;
+    private static final double[] COS = new double[VERTICES], SIN = new double[VERTICES];
+    // reused by all rings (they are drawn only by the drawing thread)
+    private static final int[] xs = new int[VERTICES], ys = new int[VERTICES];
+    private static final double[] lengths = new double[VERTICES];
+    static {
+        for(int i = 0; i < VERTICES; i++) {
+            COS[i] = Math.cos(2*Math.PI*i/VERTICES);
+            SIN[i] = Math.sin(2*Math.PI*i/VERTICES);
+        }
+    }
 
-    Ring(Point2D center, double r, Color col) {
+    private Point2D center;
+    private double radius;
+    private Metric metric;
+    private Color color;
+
+    Ring(Point2D center, double r, Metric metric, Color col) {
+        set(center, r, metric, col);
+    }
+
+    /**
+     * Changes the center, the radius and the color of the ring, so it can be reused instead of creating a new one.
+     * @param center - center of the ring
+     * @param r - radius of the ring
+     * @param metric - metric in which the radius is measured
+     * @param col - color of the ring
+     */
+    void set(Point2D center, double r, Metric metric, Color col) {
         this.center = center;
         radius = r;
+        this.metric = metric;
         color = col;
     }
 
     /**
      * Draws a ring in the coordinate system simulation. Coordinates are consistent with the simulation.
+     * Ring is not drawn if it is entirely outside the screen or if the whole screen is inside it.
      * @param plane - current coordinate system
      */
     @Override
     public void draw(CoordinateSystem plane) {
-        DrawUtils.g2.setStroke(new BasicStroke(3));
+        double centerX = plane.screenX(center.x), centerY = plane.screenY(center.y);
+        double r = radius*plane.scale;
+        // width of the stroke
+        final double MARGIN = 3;
+
+        // circles between which the ring lies, the same for the euclidean metric
+        double outer = r, inner = r;
+        boolean circle = metric.kind == Metric.Kind.EUCLIDEAN;
+        if(!circle) {
+            // unit balls are star-shaped, so every direction crosses the ring once in the distance radius/norm(direction)
+            outer = 0;
+            inner = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < VERTICES; i++) {
+                lengths[i] = r / metric.distance(COS[i], SIN[i]);
+                outer = Math.max(outer, lengths[i]);
+                inner = Math.min(inner, lengths[i]);
+            }
+            // sides of the polygon are closer to the center than its vertices
+            inner *= Math.cos(Math.PI / VERTICES);
+        }
+
+        // distance from the center to the nearest and the farthest point of the screen
+        double nearestX = Math.max(0, Math.max(-centerX, centerX - plane.width));
+        double nearestY = Math.max(0, Math.max(-centerY, centerY - plane.height));
+        double farthestX = Math.max(Math.abs(centerX), Math.abs(centerX - plane.width));
+        double farthestY = Math.max(Math.abs(centerY), Math.abs(centerY - plane.height));
+        if(nearestX*nearestX + nearestY*nearestY > (outer + MARGIN)*(outer + MARGIN)) return;
+        if(farthestX*farthestX + farthestY*farthestY < (inner - MARGIN)*(inner - MARGIN)) return;
+
+        DrawUtils.g2.setStroke(DrawUtils.stroke(3));
         DrawUtils.g2.setColor(color);
-        DrawUtils.ring(plane.screenX(center.x), plane.screenY(center.y), radius*plane.scale);
+        if(circle) {
+            DrawUtils.ring(centerX, centerY, r);
+            return;
+        }
+
+        for(int i = 0; i < VERTICES; i++) {
+            xs[i] = (int)(centerX + COS[i]*lengths[i]);
+            ys[i] = (int)(centerY - SIN[i]*lengths[i]);
+        }
+        DrawUtils.polygon(xs, ys, VERTICES);
     }
 
     /**
@@ -153,7 +230,7 @@ class BlinkingRectangle extends Rectangle {
             transChanges = 5;
         }
 
-        color = new Color(color.getRed(), color.getGreen(), color.getBlue(), transparency);
+        color = DrawUtils.withAlpha(color, transparency);
     }
 }
 
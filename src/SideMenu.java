@@ -1,11 +1,17 @@
 import java.awt.event.KeyEvent;
-
+import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Small menu at the left hand side of the screen, inside the cartesian plane simulations.
  */
 public class SideMenu extends Menu {
     private final int smallFont, normalFont, bigFont;
+    // all samples which have a label in the menu (samples of the simulation and their projections)
+    private final SampleIndex sampleIndex = new SampleIndex();
+    private final HashMap<Sample, SampleLabelButton> sampleLabels = new HashMap<>();
+    // labels of samples which are under the mouse
+    private final ArrayList<SampleLabelButton> hoveredLabels = new ArrayList<>();
 
     SideMenu(int width, int height) {
         super(width, height, null, "");
@@ -72,15 +78,33 @@ public class SideMenu extends Menu {
      * @param prev_my - mouse Y position in the previous frame.
      * @param simulatedX - mouse X position in the cartesian plane simulation
      * @param simulatedY - mouse Y position in the cartesian plane simulation
+     * @return true if color of some sample label button has changed
      */
-    void onMouseMoved(double mx, double my, double prev_mx, double prev_my, double simulatedX, double simulatedY) {
-        super.onMouseMoved(mx, my, prev_mx, prev_my);
+    boolean onMouseMoved(double mx, double my, double prev_mx, double prev_my, double simulatedX, double simulatedY) {
+        // buttons change only when the mouse is over the menu or has just left it
+        if(hasInside(mx, my) || hasInside(prev_mx, prev_my)) {
+            super.onMouseMoved(mx, my, prev_mx, prev_my);
+        }
 
-        for(Button button: buttons) {
-            if(button instanceof SampleLabelButton) {
-                ((SampleLabelButton)button).hoverFromSample(simulatedX, simulatedY);
-            }
+        // only labels of samples under the mouse and labels that were hovered before can change
+        boolean changed = false;
+        for(SampleLabelButton label: hoveredLabels) {
+            changed |= label.hoverFromSample(simulatedX, simulatedY);
+        }
+        hoveredLabels.clear();
+        for(Sample sample: sampleIndex.samplesAt(simulatedX, simulatedY)) {
+            SampleLabelButton label = sampleLabels.get(sample);
+            changed |= label.hoverFromSample(simulatedX, simulatedY);
+            hoveredLabels.add(label);
         }
+        return changed;
+    }
+
+    /**
+     * @return spatial index of all samples which have a label in the menu
+     */
+    SampleIndex getSampleIndex() {
+        return sampleIndex;
     }
 
     /**
@@ -138,13 +162,31 @@ public class SideMenu extends Menu {
         scrollbar.incrementTotalHeight((int)height);
     }
 
+    /**
+     * Adds the slider with the given initial value to the menu.
+     * @param title - title of the slider
+     * @param lowerBound - minimal value of the slider ( when it is on the left side )
+     * @param upperBound - maximal value of the slider ( when it is on the right side )
+     * @param initialValue - value of the slider before it is moved
+     * @param height - height of the button
+     * @param discrete - if true then only integers can be returned from this slider else any real number.
+     */
+    public void addSlider(String title, double lowerBound, double upperBound, double initialValue, double height, boolean discrete) {
+        buttons.add(new Slider(0, scrollbar.getTotalHeight() + scrollbar.getCurrentShift(), width, (int)height, title, normalFont,
+                    lowerBound, upperBound, initialValue, discrete));
+        scrollbar.incrementTotalHeight((int)height);
+    }
+
     /**
      * Adds label that describes some sample. Updates the currentY variable
      * @param sample - sample that will be described
      * @param height - height of the button
      */
     public void addSampleLabel(Sample sample, double height, boolean available) {
-        buttons.add(new SampleLabelButton(0, scrollbar.getTotalHeight() + scrollbar.getCurrentShift(), width, (int)height, sample, smallFont, available));
+        SampleLabelButton label = new SampleLabelButton(0, scrollbar.getTotalHeight() + scrollbar.getCurrentShift(), width, (int)height, sample, smallFont, available);
+        buttons.add(label);
+        sampleLabels.put(sample, label);
+        sampleIndex.add(sample);
         scrollbar.incrementTotalHeight((int)height);
     }
 
@@ -170,6 +212,8 @@ public class SideMenu extends Menu {
         }
         buttons.remove(toRemove);
         scrollbar.decrementTotalHeight(heightOfRemovedButton, buttons);
+        hoveredLabels.remove(sampleLabels.remove(sample));
+        sampleIndex.remove(sample);
     }
 
     /**
@@ -189,7 +233,9 @@ public class SideMenu extends Menu {
      *           to an integer). 0 if there are no such a slider.
      */
     public double readValueFromSlider(String title) {
-        for(Button button: buttons) {
+        // indexed loop, because it's called while dragging and shouldn't allocate an iterator
+        for(int i = 0; i < buttons.size(); i++) {
+            Button button = buttons.get(i);
             if(button instanceof Slider && button.getLabel().equals(title)) {
                 return ((Slider)button).getValue();
             }
@@ -234,6 +280,29 @@ public class SideMenu extends Menu {
         }
     }
 
+    /**
+     * Adds a button with a line chart of values from 0 to 1. CurrentY is updated.
+     * @param title - title of the chart
+     * @param buttonHeight - height of the button
+     */
+    public void addChart(String title, double buttonHeight) {
+        buttons.add(new ChartButton(0, scrollbar.getTotalHeight() + scrollbar.getCurrentShift(), width, (int) buttonHeight, title, normalFont));
+        scrollbar.incrementTotalHeight((int)buttonHeight);
+    }
+
+    /**
+     * updates values of the chart with given title.
+     * @param title - title of the chart that will be updated
+     * @param values - new values from 0 to 1
+     */
+    public void updateChart(String title, double[] values) {
+        for(Button button: buttons) {
+            if(button instanceof ChartButton && ((ChartButton) button).getTitle().equals(title)) {
+                ((ChartButton) button).updateValues(values);
+            }
+        }
+    }
+
     /**
      * When mouse is pressed it updates the availability of
      * each input fields that are inside the "sample label buttons"
@@ -14,13 +14,17 @@ class Slider extends Button {
     private final boolean discrete;
 
     Slider(int x, int y, int width, int height, String label, int fontSize, double lowerBound, double upperBound, boolean discrete) {
+        // by default value is set to 50%
+        this(x, y, width, height, label, fontSize, lowerBound, upperBound, (upperBound - lowerBound)/2, discrete);
+    }
+
+    Slider(int x, int y, int width, int height, String label, int fontSize, double lowerBound, double upperBound,
+           double initialValue, boolean discrete) {
         super(x, y, width, height, label, fontSize);
         this.lowerBound = lowerBound;
         this.upperBound = upperBound;
         this.discrete = discrete;
-
-        // by default value is set to 50%
-        value = (upperBound - lowerBound)/2;
+        value = initialValue;
     }
 
     /**
@@ -32,7 +36,7 @@ class Slider extends Button {
         super.draw();
 
         DrawUtils.g2.setColor(textCol);
-        DrawUtils.setFont(new Font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
+        DrawUtils.setFont(DrawUtils.font(DrawUtils.regularFontName, Font.PLAIN, fontSize));
 
         // prints label+": "+roundedValue where roundedValue has two decimal places if discrete variable is false
         // or int(value) if discrete is true
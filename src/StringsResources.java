@@ -48,6 +48,7 @@ public class StringsResources {
     static String menu() { return new String[]{"Main Menu", "Menu Główne"}[language]; }
     static String help() { return new String[]{"Help", "Pomoc"}[language]; }
     static String grid() { return new String[]{"Grid", "Kratka"}[language]; }
+    static String frameTimings() { return new String[]{"Frame timings", "Czasy klatek"}[language]; }
     static String areYouSure() { return new String[]{"Are you sure you want to quit this simulation?", "Czy jesteś pewny, że chcesz wyjść z symulacji?"}[language]; }
     static String close() { return new String[]{"Close", "Zamknij"}[language]; }
     static String yes() { return new String[]{"Yes", "Tak"}[language]; }
@@ -70,10 +71,28 @@ public class StringsResources {
     static String eta() { return "ETA"; }
     static String epochs() { return new String[]{"Epochs", "Epoki"}[language]; }
     static String bias() { return new String[]{"Bias", "Próg"}[language]; }
+    static String batchSize() { return new String[]{"Batch size", "Rozmiar paczki"}[language]; }
+    static String loss() { return new String[]{"Loss", "Strata"}[language]; }
 
     //knn
     static String distances() { return new String[]{"Distances", "Odległości"}[language]; }
     static String rings() { return new String[]{"Rings", "Pierścienie"}[language]; }
+    static String regions() { return new String[]{"Regions", "Obszary"}[language]; }
+    static String approximate() { return new String[]{"Approximate", "Przybliżony"}[language]; }
+    static String accuracy() { return new String[]{"Accuracy", "Dokładność"}[language]; }
+    static String recall() { return new String[]{"Recall", "Czułość"}[language]; }
+    static String metric() { return new String[]{"Metric", "Metryka"}[language]; }
+    static String changeMetric() { return new String[]{"Change metric", "Zmień metrykę"}[language]; }
+    static String weight() { return new String[]{"Weight of y", "Waga y"}[language]; }
+    static String euclidean() { return new String[]{"Euclidean", "Euklidesowa"}[language]; }
+    static String manhattan() { return new String[]{"Manhattan", "Manhattan"}[language]; }
+    static String chebyshev() { return new String[]{"Chebyshev", "Czebyszewa"}[language]; }
+    static String minkowski() { return new String[]{"Minkowski", "Minkowskiego"}[language]; }
+    static String bestK() { return new String[]{"Best k", "Najlepsze k"}[language]; }
+    static String leaveOneOutAccuracy() { return new String[]{"Accuracy (LOO)", "Trafność (LOO)"}[language]; }
+    static String regression() { return new String[]{"Regression", "Regresja"}[language]; }
+    static String weightedByDistance() { return new String[]{"Weighted mean", "Średnia ważona"}[language]; }
+    static String weightedEuclidean() { return new String[]{"Weighted euclidean", "Ważona euklidesowa"}[language]; }
 
     // pca
     static String covMatrix() { return new String[]{"Cov Matrix", "Macierz Kow."}[language]; }
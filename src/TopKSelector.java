@@ -0,0 +1,122 @@
+/**
+ * Keeps k smallest (distance, id) pairs offered to it. It's a max-heap of fixed size on primitive arrays,
+ * so the farthest of kept pairs is on the top and can be replaced in O(log k).
+ * Pairs with equal distances are ordered by id, so the result doesn't depend on the order of offers.
+ * One selector is reused by many queries and allocates memory only when k grows.
+ */
+class TopKSelector {
+    private double[] distances = new double[0];
+    private int[] ids = new int[0];
+    private int size, capacity;
+    // scratch space of batched kernels
+    private double[] buffer = new double[0];
+
+    /**
+     * Removes all pairs and sets the number of kept pairs.
+     * @param k - how many pairs are kept
+     */
+    void reset(int k) {
+        if(distances.length < k) {
+            distances = new double[k];
+            ids = new int[k];
+        }
+        capacity = k;
+        size = 0;
+    }
+
+    /**
+     * @param size - needed length
+     * @return reused array of at least that length for distances computed before offering them
+     * (like the selector, it belongs to one thread)
+     */
+    double[] buffer(int size) {
+        if(buffer.length < size) buffer = new double[Math.max(size, buffer.length*2)];
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @return the biggest kept distance or infinity if there are fewer than k pairs yet
+     */
+    double worst() {
+        return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * @return true if pair (distance1, id1) is farther than (distance2, id2)
+     */
+    private static boolean farther(double distance1, int id1, double distance2, int id2) {
+        return distance1 > distance2 || (distance1 == distance2 && id1 > id2);
+    }
+
+    /**
+     * Adds the pair if it's one of k closest ones.
+     * @param distance - distance (squared distance works the same)
+     * @param id - identifier of the pair, used when distances are equal
+     */
+    void offer(double distance, int id) {
+        if(size < capacity) {
+            // sift up
+            int i = size++;
+            while(i > 0) {
+                int parent = (i - 1) >>> 1;
+                if(!farther(distance, id, distances[parent], ids[parent])) break;
+                distances[i] = distances[parent];
+                ids[i] = ids[parent];
+                i = parent;
+            }
+            distances[i] = distance;
+            ids[i] = id;
+        } else if(capacity > 0 && farther(distances[0], ids[0], distance, id)) {
+            siftDown(0, distance, id, size);
+        }
+    }
+
+    /**
+     * Puts the pair on position i and moves it down the heap of given size.
+     */
+    private void siftDown(int i, double distance, int id, int heapSize) {
+        while(true) {
+            int child = 2*i + 1;
+            if(child >= heapSize) break;
+            if(child + 1 < heapSize && farther(distances[child + 1], ids[child + 1], distances[child], ids[child])) {
+                child++;
+            }
+            if(!farther(distances[child], ids[child], distance, id)) break;
+            distances[i] = distances[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        distances[i] = distance;
+        ids[i] = id;
+    }
+
+    /**
+     * Sorts kept pairs from the closest to the farthest (heap sort), after that {@code distance(i)} and {@code id(i)}
+     * return the i-th closest pair. Offering new pairs after sorting requires {@code reset}.
+     */
+    void sort() {
+        for(int end = size - 1; end > 0; end--) {
+            double distance = distances[end];
+            int id = ids[end];
+            distances[end] = distances[0];
+            ids[end] = ids[0];
+            siftDown(0, distance, id, end);
+        }
+    }
+
+    double distance(int i) {
+        return distances[i];
+    }
+
+    int id(int i) {
+        return ids[i];
+    }
+}
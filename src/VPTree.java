@@ -0,0 +1,220 @@
+import java.util.List;
+
+/**
+ * Vantage-point tree over training samples used by KNN with metrics other than the euclidean one
+ * (KD-tree prunes by differences of coordinates which works only for euclidean distances).
+ * It needs only the triangle inequality, so it works for every true metric.
+ * The first sample of every range is its vantage point, the rest is split by the median distance from it:
+ * the inside part [from + 1, middle) and the outside part [middle, to). Small ranges are buckets
+ * which are checked sample by sample with the kernel of the metric (the kind of the metric is checked
+ * once per bucket and once per split range while building, but once per vantage point during the search).
+ * Selector gets true distances of the metric.
+ */
+class VPTree implements NeighbourEngine {
+    // ranges with at most that many samples are not split
+    private static final int BUCKET_SIZE = 8;
+    // distances are rounded, so pruning leaves a bit of margin
+    private static final double EPSILON = 1e-9;
+
+    private final Metric metric;
+    // training samples in the original order, ids are positions in this array
+    private final Sample[] samples;
+    // coordinates and ids of samples in the order of the tree
+    private final double[] xs, ys;
+    private final int[] ids;
+    // on positions of vantage points - median distance from them, on other positions - distances used while building
+    private final double[] medians;
+    // id of the training sample which is being dragged or -1, the tree skips it and uses its current position instead
+    private int movedId = -1;
+
+    VPTree(List<Sample> training, Metric metric) {
+        this.metric = metric;
+        int n = training.size();
+        samples = training.toArray(new Sample[0]);
+        xs = new double[n];
+        ys = new double[n];
+        ids = new int[n];
+        medians = new double[n];
+        for(int i = 0; i < n; i++) {
+            xs[i] = samples[i].getX();
+            ys[i] = samples[i].getY();
+            ids[i] = i;
+        }
+        build(0, n);
+    }
+
+    @Override
+    public Metric metric() {
+        return metric;
+    }
+
+    @Override
+    public double distance(double key) {
+        return key;
+    }
+
+    @Override
+    public int size() {
+        return samples.length;
+    }
+
+    @Override
+    public Sample sample(int id) {
+        return samples[id];
+    }
+
+    @Override
+    public boolean setMoved(Sample sample) {
+        for(int id = 0; id < samples.length; id++) {
+            if(samples[id] == sample) {
+                movedId = id;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clearMoved() {
+        movedId = -1;
+    }
+
+    @Override
+    public boolean hasMoved() {
+        return movedId != -1;
+    }
+
+    /**
+     * Takes the middle sample of the range as its vantage point (moved to the position 'from')
+     * and splits the rest of the range by the median distance from it.
+     */
+    private void build(int from, int to) {
+        if(to - from <= BUCKET_SIZE) return;
+
+        swap(from, (from + to) >>> 1);
+        metric.distances(xs, ys, from + 1, to, xs[from], ys[from], medians);
+        int middle = (from + 1 + to) >>> 1;
+        select(from + 1, to - 1, middle);
+        medians[from] = medians[middle];
+
+        build(from + 1, middle);
+        build(middle, to);
+    }
+
+    /**
+     * Quickselect by distances from the vantage point: moves elements of range [left, right] so that
+     * the element on position nth is the one which would be there after sorting.
+     */
+    private void select(int left, int right, int nth) {
+        while(right > left) {
+            double pivot = medians[(left + right) >>> 1];
+            int i = left, j = right;
+            while(i <= j) {
+                while(medians[i] < pivot) i++;
+                while(medians[j] > pivot) j--;
+                if(i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if(nth <= j) {
+                right = j;
+            } else if(nth >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+        double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+        double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+        double median = medians[i]; medians[i] = medians[j]; medians[j] = median;
+    }
+
+    /**
+     * Finds k training samples closest to the point in the metric of the tree (exactly).
+     * Equally distant samples are ordered by id.
+     * @param x - x coordinate of the point
+     * @param y - y coordinate of the point
+     * @param k - number of neighbours
+     * @param selector - reused selector which receives the result
+     */
+    @Override
+    public void nearest(double x, double y, int k, TopKSelector selector) {
+        selector.reset(k);
+        if(k > 0) {
+            search(0, samples.length, x, y, selector);
+            if(movedId != -1) {
+                selector.offer(metric.distance(samples[movedId].getX() - x, samples[movedId].getY() - y), movedId);
+            }
+        }
+        selector.sort();
+    }
+
+    private void search(int from, int to, double x, double y, TopKSelector selector) {
+        if(to - from <= BUCKET_SIZE) {
+            searchBucket(from, to, x, y, selector);
+            return;
+        }
+
+        double distance = metric.distance(xs[from] - x, ys[from] - y);
+        if(ids[from] != movedId) selector.offer(distance, ids[from]);
+
+        // samples inside are at most median away from the vantage point, outside at least median
+        // so by the triangle inequality the other part is checked only if it can be closer than the farthest neighbour
+        double median = medians[from];
+        int middle = (from + 1 + to) >>> 1;
+        if(distance < median) {
+            search(from + 1, middle, x, y, selector);
+            if(median - distance <= selector.worst() + EPSILON*(median + distance)) {
+                search(middle, to, x, y, selector);
+            }
+        } else {
+            search(middle, to, x, y, selector);
+            if(distance - median <= selector.worst() + EPSILON*(median + distance)) {
+                search(from + 1, middle, x, y, selector);
+            }
+        }
+    }
+
+    /**
+     * Offers all samples of the bucket. Every kind of metric has its own loop, so the kind is checked once.
+     */
+    private void searchBucket(int from, int to, double x, double y, TopKSelector selector) {
+        switch(metric.kind) {
+            case MANHATTAN:
+                for(int i = from; i < to; i++) {
+                    if(ids[i] != movedId) selector.offer(Math.abs(xs[i] - x) + Math.abs(ys[i] - y), ids[i]);
+                }
+                break;
+            case CHEBYSHEV:
+                for(int i = from; i < to; i++) {
+                    if(ids[i] != movedId) selector.offer(Math.max(Math.abs(xs[i] - x), Math.abs(ys[i] - y)), ids[i]);
+                }
+                break;
+            case MINKOWSKI:
+                double p = metric.p, inverse = 1/p;
+                for(int i = from; i < to; i++) {
+                    double sum = Math.pow(Math.abs(xs[i] - x), p) + Math.pow(Math.abs(ys[i] - y), p);
+                    if(ids[i] != movedId) selector.offer(Math.pow(sum, inverse), ids[i]);
+                }
+                break;
+            case WEIGHTED_EUCLIDEAN:
+                double weightX = metric.weightX, weightY = metric.weightY;
+                for(int i = from; i < to; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    if(ids[i] != movedId) selector.offer(Math.sqrt(weightX*dx*dx + weightY*dy*dy), ids[i]);
+                }
+                break;
+            default:
+                for(int i = from; i < to; i++) {
+                    double dx = xs[i] - x, dy = ys[i] - y;
+                    if(ids[i] != movedId) selector.offer(Math.sqrt(dx*dx + dy*dy), ids[i]);
+                }
+        }
+    }
+}
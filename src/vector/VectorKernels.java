@@ -0,0 +1,79 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of kernels of {@code MathKernels} written with the Vector API (incubator module of the JDK).
+ * It's kept outside of the rest of sources, because it can be compiled only with the module added:
+ * javac --add-modules jdk.incubator.vector -cp out -d out vector/VectorKernels.java
+ * Every loop processes as many doubles as fit into the widest vector of the CPU, the remaining elements
+ * are processed one by one like in the plain loops. Reductions keep one partial sum per lane
+ * and add lanes together at the end.
+ */
+class VectorKernels implements MathKernels.Implementation {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void squaredDistances(double[] xs, double[] ys, int from, int to, double x, double y, double[] out) {
+        int i = from;
+        for(int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(x);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(y);
+            // multiplications and the addition are separate (not fma), so results are the same as of the plain loop
+            dx.mul(dx).add(dy.mul(dy)).intoArray(out, i - from);
+        }
+        for(; i < to; i++) {
+            double dx = xs[i] - x, dy = ys[i] - y;
+            out[i - from] = dx*dx + dy*dy;
+        }
+    }
+
+    @Override
+    public double dot(double[] xs, double[] ys, int n) {
+        int i = 0;
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        for(int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, xs, i).mul(DoubleVector.fromArray(SPECIES, ys, i)));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for(; i < n; i++) {
+            sum += xs[i]*ys[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] values, int n) {
+        int i = 0;
+        DoubleVector sums = DoubleVector.zero(SPECIES);
+        for(int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            sums = sums.add(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double sum = sums.reduceLanes(VectorOperators.ADD);
+        for(; i < n; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void logisticPredictions(double[] xs, double[] ys, int n, double wx, double wy, double bias, double[] out) {
+        int i = 0;
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+        for(int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            // the input is computed in the same order as in the plain loop: (wx*x + wy*y) + bias
+            DoubleVector input = DoubleVector.fromArray(SPECIES, xs, i).mul(wx)
+                    .add(DoubleVector.fromArray(SPECIES, ys, i).mul(wy)).add(bias);
+            // 1 / (1 + e^-input)
+            one.div(input.neg().lanewise(VectorOperators.EXP).add(1)).intoArray(out, i);
+        }
+        for(; i < n; i++) {
+            out[i] = MathUtils.sigmoid(wx*xs[i] + wy*ys[i] + bias);
+        }
+    }
+}